@@ -0,0 +1,150 @@
+package com.label305.stan.async;
+
+import junit.framework.TestCase;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings({"MagicNumber", "AnonymousInnerClass"})
+public class BoundTaskTrackerTest extends TestCase {
+
+    private static final int GC_ATTEMPTS = 20;
+
+    private static final long GC_WAIT_MS = 50L;
+
+    private QueueingExecutor mQueueingExecutor;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mQueueingExecutor = new QueueingExecutor();
+    }
+
+    /**
+     * Binds given task to a new owner, and executes it. Returns a reference to the owner, which is not retained otherwise.
+     */
+    private static WeakReference<Object> bindAndExecute(final AsyncTask<Object> task) {
+        Object owner = new Object();
+        task.bindTo(owner, new OwnerCallbacks<Object, Object>() {
+        });
+        task.execute();
+        return new WeakReference<>(owner);
+    }
+
+    private static void awaitCollected(final WeakReference<Object> reference) throws InterruptedException {
+        for (int i = 0; i < GC_ATTEMPTS && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(GC_WAIT_MS);
+        }
+        assertThat(reference.get(), is(nullValue()));
+    }
+
+    private static List<String> getReportLinesOf(final Class<?> taskClass) {
+        List<String> result = new ArrayList<>();
+        for (String line : AsyncTask.getOutlivedOwnerReport()) {
+            if (line.startsWith(taskClass.getName() + ' ')) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    public void testQueuedTaskOfCollectedOwnerIsReported() throws InterruptedException {
+        QueuedTask task = new QueuedTask(mQueueingExecutor);
+
+        awaitCollected(bindAndExecute(task));
+
+        assertThat(task.isOwnerCollected(), is(true));
+        assertThat(getReportLinesOf(QueuedTask.class), hasSize(1));
+        task.cancel();
+    }
+
+    public void testTaskCancelledBeforeRunningIsNotReported() throws InterruptedException {
+        CancelledTask task = new CancelledTask(mQueueingExecutor);
+        WeakReference<Object> ownerReference = bindAndExecute(task);
+
+        task.cancel();
+        awaitCollected(ownerReference);
+
+        assertThat(getReportLinesOf(CancelledTask.class), is(empty()));
+    }
+
+    public void testFinishedTaskIsNotReported() throws InterruptedException {
+        FinishedTask task = new FinishedTask(new DirectExecutor());
+
+        awaitCollected(bindAndExecute(task));
+
+        assertThat(getReportLinesOf(FinishedTask.class), is(empty()));
+    }
+
+    public void testBindingAfterExecuteIsRejected() {
+        QueuedTask task = new QueuedTask(mQueueingExecutor);
+        task.execute();
+
+        try {
+            task.bindTo(new Object(), new OwnerCallbacks<Object, Object>() {
+            });
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException ignored) {
+            /* Expected */
+        } finally {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Holds on to the commands it is given, without running them.
+     */
+    private static class QueueingExecutor implements Executor {
+
+        private final List<Runnable> mCommands = new ArrayList<>();
+
+        @Override
+        public void execute(@NotNull final Runnable command) {
+            mCommands.add(command);
+        }
+    }
+
+    private static class DirectExecutor implements Executor {
+
+        @Override
+        public void execute(@NotNull final Runnable command) {
+            command.run();
+        }
+    }
+
+    private static class QueuedTask extends AsyncTask<Object> {
+
+        QueuedTask(@NotNull final Executor executor) {
+            super(executor);
+        }
+
+        @Nullable
+        @Override
+        public Object call() {
+            return null;
+        }
+    }
+
+    private static class CancelledTask extends QueuedTask {
+
+        CancelledTask(@NotNull final Executor executor) {
+            super(executor);
+        }
+    }
+
+    private static class FinishedTask extends QueuedTask {
+
+        FinishedTask(@NotNull final Executor executor) {
+            super(executor);
+        }
+    }
+}
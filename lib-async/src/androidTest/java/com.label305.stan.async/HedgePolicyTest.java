@@ -0,0 +1,114 @@
+package com.label305.stan.async;
+
+import junit.framework.TestCase;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings({"MagicNumber", "AnonymousInnerClass"})
+public class HedgePolicyTest extends TestCase {
+
+    private static final long SLOW_CALL_MS = 2000L;
+
+    private static final long HEDGE_DELAY_MS = 100L;
+
+    private CountDownLatch mCountDownLatch;
+
+    private long mTestStartMillis;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCountDownLatch = new CountDownLatch(1);
+        mTestStartMillis = System.currentTimeMillis();
+    }
+
+    public void testHedgedAttemptWins() throws InterruptedException {
+        HedgePolicy hedgePolicy = HedgePolicy.fixedDelay(HEDGE_DELAY_MS).setMaxHedgeRatio(1);
+        SlowFirstCallAsyncTask task = new SlowFirstCallAsyncTask(mCountDownLatch);
+        task.setHedgePolicy(hedgePolicy);
+        task.execute();
+
+        mCountDownLatch.await();
+
+        assertThat(task.mCallCount.get(), is(2));
+        assertThat(task.mSuccessCount.get(), is(1));
+        assertThat(task.mResult, is(2));
+        assertThat(hedgePolicy.getHedgeCount(), is(1L));
+        assertThat(System.currentTimeMillis() - mTestStartMillis, lessThan(SLOW_CALL_MS));
+    }
+
+    public void testBudgetPreventsHedge() throws InterruptedException {
+        HedgePolicy hedgePolicy = HedgePolicy.fixedDelay(HEDGE_DELAY_MS).setMaxHedgeRatio(0);
+        SlowFirstCallAsyncTask task = new SlowFirstCallAsyncTask(mCountDownLatch);
+        task.setHedgePolicy(hedgePolicy);
+        task.execute();
+
+        mCountDownLatch.await();
+
+        assertThat(task.mCallCount.get(), is(1));
+        assertThat(task.mSuccessCount.get(), is(1));
+        assertThat(task.mResult, is(1));
+        assertThat(hedgePolicy.getHedgeCount(), is(0L));
+        assertThat(System.currentTimeMillis() - mTestStartMillis, greaterThanOrEqualTo(SLOW_CALL_MS));
+    }
+
+    public void testLatencyPercentileUsesInitialDelay() {
+        HedgePolicy hedgePolicy = HedgePolicy.latencyPercentile(0.95f, HEDGE_DELAY_MS);
+
+        assertThat(hedgePolicy.getHedgeDelayMs(), is(HEDGE_DELAY_MS));
+    }
+
+    public void testLatencyPercentileIsLearned() {
+        HedgePolicy hedgePolicy = HedgePolicy.latencyPercentile(0.5f, HEDGE_DELAY_MS);
+        for (int i = 1; i <= 64; i++) {
+            hedgePolicy.onCallFinished(i);
+        }
+
+        assertThat(hedgePolicy.getHedgeDelayMs(), is(32L));
+    }
+
+    /**
+     * An AsyncTask whose first call is slow, and whose subsequent calls return immediately.
+     * Each call returns its own sequence number.
+     */
+    private static class SlowFirstCallAsyncTask extends AsyncTask<Integer> {
+
+        private final AtomicInteger mCallCount = new AtomicInteger();
+
+        private final AtomicInteger mSuccessCount = new AtomicInteger();
+
+        private final CountDownLatch mCountDownLatch;
+
+        private Integer mResult;
+
+        private SlowFirstCallAsyncTask(final CountDownLatch countDownLatch) {
+            mCountDownLatch = countDownLatch;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            int callNumber = mCallCount.incrementAndGet();
+            if (callNumber == 1) {
+                Thread.sleep(SLOW_CALL_MS);
+            }
+            return callNumber;
+        }
+
+        @Override
+        protected void onSuccess(@Nullable final Integer t) {
+            mSuccessCount.incrementAndGet();
+            mResult = t;
+        }
+
+        @Override
+        protected void onFinally() {
+            mCountDownLatch.countDown();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.label305.stan.async;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings({"MagicNumber", "AnonymousInnerClass"})
+public class IdleExecutorTest extends TestCase {
+
+    private static final long TIMEOUT_MS = 2000L;
+
+    private static final long HELD_BACK_MS = 300L;
+
+    /**
+     * Longer than the test takes, so commands are only started when idle.
+     */
+    private static final long LONG_DEFERRAL_MS = 60000L;
+
+    /**
+     * The time after foreground work during which the IdleExecutor starts no idle work.
+     */
+    private static final long FOREGROUND_QUIET_MS = 500L;
+
+    private IdleExecutor mIdleExecutor;
+
+    private CountDownLatch mCountDownLatch;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mIdleExecutor = new IdleExecutor(1);
+        mIdleExecutor.setMaxDeferralMs(LONG_DEFERRAL_MS);
+        mCountDownLatch = new CountDownLatch(1);
+    }
+
+    private Runnable createCountDownRunnable(final CountDownLatch countDownLatch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                countDownLatch.countDown();
+            }
+        };
+    }
+
+    public void testCommandRunsWhenIdle() throws InterruptedException {
+        mIdleExecutor.execute(createCountDownRunnable(mCountDownLatch));
+
+        assertThat(mCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+    }
+
+    public void testCommandIsHeldBackWhileScrolling() throws InterruptedException {
+        mIdleExecutor.setScrolling(true);
+        mIdleExecutor.execute(createCountDownRunnable(mCountDownLatch));
+
+        assertThat(mCountDownLatch.await(HELD_BACK_MS, TimeUnit.MILLISECONDS), is(false));
+
+        mIdleExecutor.setScrolling(false);
+
+        assertThat(mCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+    }
+
+    public void testOverdueCommandRunsWhileScrolling() throws InterruptedException {
+        mIdleExecutor.setMaxDeferralMs(HELD_BACK_MS);
+        mIdleExecutor.setScrolling(true);
+        long startMs = System.currentTimeMillis();
+        mIdleExecutor.execute(createCountDownRunnable(mCountDownLatch));
+
+        assertThat(mCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+        assertThat(System.currentTimeMillis() - startMs, greaterThanOrEqualTo(HELD_BACK_MS));
+        mIdleExecutor.setScrolling(false);
+    }
+
+    public void testCommandIsHeldBackAfterForegroundWork() throws InterruptedException {
+        IdleExecutor.onForegroundWork();
+        long startMs = System.currentTimeMillis();
+        mIdleExecutor.execute(createCountDownRunnable(mCountDownLatch));
+
+        assertThat(mCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+        assertThat(System.currentTimeMillis() - startMs, greaterThanOrEqualTo(FOREGROUND_QUIET_MS));
+    }
+
+    public void testCommandsRunOneAtATime() throws InterruptedException {
+        final CountDownLatch firstStartedLatch = new CountDownLatch(1);
+        final CountDownLatch firstMayFinishLatch = new CountDownLatch(1);
+        mIdleExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                firstStartedLatch.countDown();
+                try {
+                    firstMayFinishLatch.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        mIdleExecutor.execute(createCountDownRunnable(mCountDownLatch));
+
+        assertThat(firstStartedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+        assertThat(mCountDownLatch.await(HELD_BACK_MS, TimeUnit.MILLISECONDS), is(false));
+
+        firstMayFinishLatch.countDown();
+
+        assertThat(mCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+    }
+
+    public void testNextCommandYieldsToForegroundWork() throws InterruptedException {
+        final long[] firstFinishedMs = new long[1];
+        final long[] secondStartedMs = new long[1];
+        mIdleExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                /* Foreground work starts while the first command runs */
+                IdleExecutor.onForegroundWork();
+                firstFinishedMs[0] = System.currentTimeMillis();
+            }
+        });
+        mIdleExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                secondStartedMs[0] = System.currentTimeMillis();
+                mCountDownLatch.countDown();
+            }
+        });
+
+        assertThat(mCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+        assertThat(secondStartedMs[0] - firstFinishedMs[0], greaterThanOrEqualTo(FOREGROUND_QUIET_MS - 10));
+    }
+}
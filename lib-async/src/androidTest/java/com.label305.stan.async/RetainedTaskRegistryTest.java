@@ -0,0 +1,222 @@
+package com.label305.stan.async;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import junit.framework.TestCase;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings({"MagicNumber", "AnonymousInnerClass"})
+public class RetainedTaskRegistryTest extends TestCase {
+
+    private static final String KEY = "key";
+
+    private static final String RESULT = "result";
+
+    private static final long TIMEOUT_MS = 2000L;
+
+    private static final long RELEASE_TIMEOUT_MS = 100L;
+
+    private static final long NOT_DELIVERED_WAIT_MS = 500L;
+
+    private RetainedTaskRegistry mRegistry;
+
+    private Handler mMainHandler;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRegistry = new RetainedTaskRegistry();
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Runs given runnable on the main thread, as the registry requires, and waits for it.
+     */
+    private void runOnMainThread(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                latch.countDown();
+            }
+        });
+        assertThat(latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+    }
+
+    private boolean containsOnMainThread(final String key) throws InterruptedException {
+        final AtomicBoolean result = new AtomicBoolean();
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(mRegistry.contains(key));
+            }
+        });
+        return result.get();
+    }
+
+    public void testResultIsDeliveredToListener() throws InterruptedException {
+        final TestListener listener = new TestListener();
+
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRegistry.execute(KEY, new TestAsyncTask(null), listener);
+            }
+        });
+
+        assertThat(listener.mLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+        assertThat(listener.mResult.get(), is(RESULT));
+        assertThat(containsOnMainThread(KEY), is(false));
+    }
+
+    public void testDetachedResultIsDeliveredOnAttach() throws InterruptedException {
+        final TestAsyncTask task = new TestAsyncTask(null);
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRegistry.execute(KEY, task, new TestListener());
+                mRegistry.detach(KEY);
+            }
+        });
+        assertThat(task.mFinallyLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+        assertThat(containsOnMainThread(KEY), is(true));
+
+        final TestListener listener = new TestListener();
+        final AtomicBoolean attached = new AtomicBoolean();
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                attached.set(mRegistry.attach(KEY, listener));
+            }
+        });
+
+        assertThat(attached.get(), is(true));
+        assertThat(listener.mLatch.getCount(), is(0L));
+        assertThat(listener.mResult.get(), is(RESULT));
+        assertThat(containsOnMainThread(KEY), is(false));
+    }
+
+    public void testExecutingUnderSameKeyAttachesToRetainedTask() throws InterruptedException {
+        final CountDownLatch mayFinishLatch = new CountDownLatch(1);
+        final TestAsyncTask task = new TestAsyncTask(mayFinishLatch);
+        final TestAsyncTask otherTask = new TestAsyncTask(null);
+        final TestListener listener = new TestListener();
+        final AtomicReference<AsyncTask<String>> retainedTask = new AtomicReference<>();
+
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRegistry.execute(KEY, task, new TestListener());
+                retainedTask.set(mRegistry.execute(KEY, otherTask, listener));
+            }
+        });
+        mayFinishLatch.countDown();
+
+        assertThat(retainedTask.get(), sameInstance((AsyncTask<String>) task));
+        assertThat(listener.mLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+        assertThat(otherTask.mCallCount.get(), is(0));
+    }
+
+    public void testUnclaimedResultIsReleased() throws InterruptedException {
+        mRegistry.setReleaseTimeoutMs(RELEASE_TIMEOUT_MS);
+        final TestAsyncTask task = new TestAsyncTask(null);
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRegistry.execute(KEY, task, null);
+            }
+        });
+        assertThat(task.mFinallyLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), is(true));
+
+        Thread.sleep(RELEASE_TIMEOUT_MS * 3);
+
+        assertThat(containsOnMainThread(KEY), is(false));
+    }
+
+    public void testCancelledTaskIsRemovedWithoutDelivery() throws InterruptedException {
+        final CountDownLatch mayFinishLatch = new CountDownLatch(1);
+        final TestAsyncTask task = new TestAsyncTask(mayFinishLatch);
+        final TestListener listener = new TestListener();
+
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRegistry.execute(KEY, task, listener);
+                mRegistry.cancel(KEY);
+            }
+        });
+        mayFinishLatch.countDown();
+
+        assertThat(containsOnMainThread(KEY), is(false));
+        assertThat(listener.mLatch.await(NOT_DELIVERED_WAIT_MS, TimeUnit.MILLISECONDS), is(false));
+    }
+
+    private static class TestAsyncTask extends AsyncTask<String> {
+
+        @Nullable
+        private final CountDownLatch mMayFinishLatch;
+
+        private final AtomicInteger mCallCount = new AtomicInteger();
+
+        private final CountDownLatch mFinallyLatch = new CountDownLatch(1);
+
+        /**
+         * @param mayFinishLatch if not null, the call waits for it.
+         */
+        TestAsyncTask(@Nullable final CountDownLatch mayFinishLatch) {
+            mMayFinishLatch = mayFinishLatch;
+        }
+
+        @Nullable
+        @Override
+        public String call() throws InterruptedException {
+            mCallCount.incrementAndGet();
+            if (mMayFinishLatch != null) {
+                mMayFinishLatch.await();
+            }
+            return RESULT;
+        }
+
+        @Override
+        protected void onFinally() {
+            super.onFinally();
+            mFinallyLatch.countDown();
+        }
+    }
+
+    private static class TestListener implements RetainedTaskRegistry.Listener<String> {
+
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+
+        private final AtomicReference<String> mResult = new AtomicReference<>();
+
+        @Override
+        public void onSuccess(@Nullable final String result) {
+            mResult.set(result);
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onException(@NotNull final Exception e) {
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onCancelled() {
+            mLatch.countDown();
+        }
+    }
+}
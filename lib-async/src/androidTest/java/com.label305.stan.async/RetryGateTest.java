@@ -0,0 +1,191 @@
+package com.label305.stan.async;
+
+import junit.framework.TestCase;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings({"MagicNumber", "AnonymousInnerClass"})
+public class RetryGateTest extends TestCase {
+
+    private static final long PARK_WAIT_MS = 1000L;
+
+    private TestConnectivitySource mConnectivitySource;
+
+    private RetryGate mRetryGate;
+
+    private CountDownLatch mCountDownLatch;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mConnectivitySource = new TestConnectivitySource();
+        mRetryGate = new RetryGate(mConnectivitySource);
+        mRetryGate.setFlushIntervalMs(50);
+        mCountDownLatch = new CountDownLatch(1);
+    }
+
+    public void testOfflineRetryIsParked() throws InterruptedException {
+        mConnectivitySource.setConnected(false);
+        TestRetryAsyncTask task = new TestRetryAsyncTask(mConnectivitySource, mCountDownLatch, false);
+        task.setRetryGate(mRetryGate);
+        task.execute();
+
+        Thread.sleep(PARK_WAIT_MS);
+
+        assertThat(mRetryGate.getParkedCount(), is(1));
+        assertThat(task.mCallCount.get(), is(0));
+
+        mConnectivitySource.setConnected(true);
+        mCountDownLatch.await();
+
+        assertThat(task.mCallCount.get(), is(1));
+        assertThat(task.mSucceeded, is(true));
+    }
+
+    public void testNetworkFailureWhileGoingOfflineDoesNotCountAsTry() throws InterruptedException {
+        TestRetryAsyncTask task = new TestRetryAsyncTask(mConnectivitySource, mCountDownLatch, true);
+        task.setRetryGate(mRetryGate);
+        task.setMaxTryCount(1);
+        task.execute();
+
+        Thread.sleep(PARK_WAIT_MS);
+
+        assertThat(mRetryGate.getParkedCount(), is(1));
+        assertThat(task.mCallCount.get(), is(1));
+
+        mConnectivitySource.setConnected(true);
+        mCountDownLatch.await();
+
+        assertThat(task.mCallCount.get(), is(2));
+        assertThat(task.mSucceeded, is(true));
+    }
+
+    public void testCancelReleasesParkedRetry() throws InterruptedException {
+        mConnectivitySource.setConnected(false);
+        TestRetryAsyncTask task = new TestRetryAsyncTask(mConnectivitySource, mCountDownLatch, true);
+        task.setRetryGate(mRetryGate);
+        task.execute();
+
+        Thread.sleep(PARK_WAIT_MS);
+        task.cancel();
+        mCountDownLatch.await();
+
+        assertThat(mRetryGate.getParkedCount(), is(0));
+        assertThat(task.mCallCount.get(), is(0));
+        assertThat(task.mCancelled, is(true));
+    }
+
+    public void testParkedRetriesResumeInPriorityOrder() throws InterruptedException {
+        mConnectivitySource.setConnected(false);
+        final List<Integer> resumedPriorities = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch resumedLatch = new CountDownLatch(3);
+
+        for (final int priority : new int[]{1, 3, 2}) {
+            final ExponentialBackoffAsyncTask<Object> task = new TestRetryAsyncTask(mConnectivitySource, mCountDownLatch, true);
+            task.setPriority(priority);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    mRetryGate.await(task);
+                    resumedPriorities.add(priority);
+                    resumedLatch.countDown();
+                }
+            }).start();
+            Thread.sleep(100);
+        }
+
+        assertThat(mRetryGate.getParkedCount(), is(3));
+
+        mConnectivitySource.setConnected(true);
+        resumedLatch.await();
+
+        assertThat(resumedPriorities, contains(3, 2, 1));
+    }
+
+    /**
+     * A local stand-in ConnectivitySource.
+     */
+    private static class TestConnectivitySource implements ConnectivitySource {
+
+        private volatile boolean mIsConnected = true;
+
+        @Nullable
+        private Listener mListener;
+
+        @Override
+        public boolean isConnected() {
+            return mIsConnected;
+        }
+
+        @Override
+        public void setListener(@Nullable final Listener listener) {
+            mListener = listener;
+        }
+
+        void setConnected(final boolean isConnected) {
+            mIsConnected = isConnected;
+            if (mListener != null) {
+                mListener.onConnectivityChanged(isConnected);
+            }
+        }
+    }
+
+    /**
+     * An ExponentialBackoffAsyncTask which can fail with an IOException the first time it is called,
+     * and takes the device offline when doing so.
+     */
+    private static class TestRetryAsyncTask extends ExponentialBackoffAsyncTask<Object> {
+
+        private final AtomicInteger mCallCount = new AtomicInteger();
+
+        private final TestConnectivitySource mConnectivitySource;
+
+        private final CountDownLatch mCountDownLatch;
+
+        private final boolean mFailFirstCall;
+
+        private volatile boolean mSucceeded;
+
+        private volatile boolean mCancelled;
+
+        private TestRetryAsyncTask(final TestConnectivitySource connectivitySource, final CountDownLatch countDownLatch, final boolean failFirstCall) {
+            mConnectivitySource = connectivitySource;
+            mCountDownLatch = countDownLatch;
+            mFailFirstCall = failFirstCall;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            if (mCallCount.incrementAndGet() == 1 && mFailFirstCall) {
+                mConnectivitySource.setConnected(false);
+                throw new IOException("Offline");
+            }
+            return null;
+        }
+
+        @Override
+        protected void onSuccess(@Nullable final Object t) {
+            mSucceeded = true;
+        }
+
+        @Override
+        protected void onCancelled() {
+            mCancelled = true;
+        }
+
+        @Override
+        protected void onFinally() {
+            mCountDownLatch.countDown();
+        }
+    }
+}
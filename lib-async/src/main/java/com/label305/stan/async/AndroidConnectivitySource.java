@@ -0,0 +1,57 @@
+package com.label305.stan.async;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link ConnectivitySource} backed by Android's {@link ConnectivityManager}.
+ * <p/>
+ * Requires the {@code android.permission.ACCESS_NETWORK_STATE} permission. This library does not request it,
+ * so apps which use this class must declare it in their own manifest.
+ */
+public class AndroidConnectivitySource extends BroadcastReceiver implements ConnectivitySource {
+
+    @NotNull
+    private final Context mContext;
+
+    @NotNull
+    private final ConnectivityManager mConnectivityManager;
+
+    @Nullable
+    private Listener mListener;
+
+    public AndroidConnectivitySource(@NotNull final Context context) {
+        mContext = context.getApplicationContext();
+        mConnectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    @Override
+    public boolean isConnected() {
+        NetworkInfo networkInfo = mConnectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    @Override
+    public void setListener(@Nullable final Listener listener) {
+        if (mListener == null && listener != null) {
+            mContext.registerReceiver(this, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        } else if (mListener != null && listener == null) {
+            mContext.unregisterReceiver(this);
+        }
+        mListener = listener;
+    }
+
+    @Override
+    public void onReceive(final Context context, final Intent intent) {
+        if (mListener != null) {
+            mListener.onConnectivityChanged(isConnected());
+        }
+    }
+}
@@ -5,6 +5,8 @@ import android.os.Handler;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.ref.WeakReference;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -36,6 +38,8 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
 
     private static final String CANCEL_EXCEPTION = "You cannot cancel this task before calling mFutureTask()";
 
+    private static final String BIND_EXCEPTION = "You cannot bind this task after calling execute()";
+
     @Nullable
     private Handler mHandler;
 
@@ -48,6 +52,23 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
     @Nullable
     private FutureTask<Void> mFutureTask;
 
+    @Nullable
+    private HedgePolicy mHedgePolicy;
+
+    private long mExecuteTimeMs;
+
+    /**
+     * The owner this task is bound to, if any.
+     */
+    @Nullable
+    private WeakReference<Object> mOwnerReference;
+
+    @Nullable
+    private String mOwnerClassName;
+
+    @Nullable
+    private OwnerCallbacks<Object, ResultT> mOwnerCallbacks;
+
     /**
      * A Runnable that can be set to execute on preexecute.
      */
@@ -126,7 +147,14 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
     @NotNull
     public AsyncTask<ResultT> execute(@NotNull final Task<ResultT> task) {
         mLaunchLocation = Thread.currentThread().getStackTrace();
-        mFutureTask = new FutureTask<>(task, null);
+        mExecuteTimeMs = System.currentTimeMillis();
+        if (mOwnerReference != null) {
+            BoundTaskTracker.onExecute(this);
+        }
+        if (!(mExecutor instanceof IdleExecutor)) {
+            IdleExecutor.onForegroundWork();
+        }
+        mFutureTask = new TrackedFutureTask(task);
         mExecutor.execute(mFutureTask);
         return this;
     }
@@ -227,6 +255,28 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
         return this;
     }
 
+    @Nullable
+    public HedgePolicy getHedgePolicy() {
+        return mHedgePolicy;
+    }
+
+    /**
+     * Sets a {@link HedgePolicy} to use when executing the {@link #call()} method.
+     * When set, a second attempt of {@link #call()} is launched if the first attempt takes too long,
+     * and the result of whichever attempt finishes first is used. Callbacks are only called once.
+     * <p/>
+     * Only use this if {@link #call()} is idempotent and safe to run concurrently.
+     *
+     * @param hedgePolicy the HedgePolicy, or null to disable hedging.
+     *
+     * @return this instance.
+     */
+    @NotNull
+    public AsyncTask<ResultT> setHedgePolicy(@Nullable final HedgePolicy hedgePolicy) {
+        mHedgePolicy = hedgePolicy;
+        return this;
+    }
+
     /* Callback methods */
 
     /**
@@ -236,6 +286,11 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
         if (mOnPreExecuteRunnable != null) {
             mOnPreExecuteRunnable.onPreExecute();
         }
+
+        Object owner = getOwner();
+        if (owner != null && mOwnerCallbacks != null) {
+            mOwnerCallbacks.onPreExecute(owner);
+        }
     }
 
     /**
@@ -249,6 +304,11 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
         if (mOnSuccessRunnable != null) {
             mOnSuccessRunnable.onSuccess(t);
         }
+
+        Object owner = getOwner();
+        if (owner != null && mOwnerCallbacks != null) {
+            mOwnerCallbacks.onSuccess(owner, t);
+        }
     }
 
     /**
@@ -276,6 +336,11 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
         if (mOnCancelledRunnable != null) {
             mOnCancelledRunnable.onCancelled();
         }
+
+        Object owner = getOwner();
+        if (owner != null && mOwnerCallbacks != null) {
+            mOwnerCallbacks.onCancelled(owner);
+        }
     }
 
     /**
@@ -287,6 +352,11 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
         if (mOnExceptionRunnable != null) {
             mOnExceptionRunnable.onException(e);
         }
+
+        Object owner = getOwner();
+        if (owner != null && mOwnerCallbacks != null) {
+            mOwnerCallbacks.onException(owner, e);
+        }
     }
 
     /**
@@ -309,6 +379,11 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
         if (mOnFinallyRunnable != null) {
             mOnFinallyRunnable.onFinally();
         }
+
+        Object owner = getOwner();
+        if (owner != null && mOwnerCallbacks != null) {
+            mOwnerCallbacks.onFinally(owner);
+        }
     }
 
     /**
@@ -383,6 +458,93 @@ public abstract class AsyncTask<ResultT> implements Callable<ResultT> {
         return this;
     }
 
+    /**
+     * Binds this task to given owner, such as an Activity or a View.
+     * The owner is only held weakly: once it has been garbage collected, given callbacks are no longer called.
+     * <p/>
+     * Unlike the runnables set with {@link #onSuccess(SuccessRunnable)} and the like, the callbacks receive the owner
+     * as a parameter, so they don't need to retain it. See {@link OwnerCallbacks}.
+     * Bound tasks which outlive their owner are listed by {@link #getOutlivedOwnerReport()}.
+     * Must be called before {@link #execute()}.
+     *
+     * @return this instance.
+     *
+     * @throws IllegalStateException if this task has been executed already.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public <OwnerT> AsyncTask<ResultT> bindTo(@NotNull final OwnerT owner, @NotNull final OwnerCallbacks<OwnerT, ResultT> callbacks) {
+        if (mFutureTask != null) {
+            throw new IllegalStateException(BIND_EXCEPTION);
+        }
+
+        mOwnerReference = new WeakReference<Object>(owner);
+        mOwnerClassName = owner.getClass().getName();
+        mOwnerCallbacks = (OwnerCallbacks<Object, ResultT>) callbacks;
+        return this;
+    }
+
+    /**
+     * Returns whether this task was bound to an owner using {@link #bindTo(Object, OwnerCallbacks)},
+     * and that owner has since been garbage collected.
+     */
+    public boolean isOwnerCollected() {
+        return mOwnerReference != null && mOwnerReference.get() == null;
+    }
+
+    @Nullable
+    String getOwnerClassName() {
+        return mOwnerClassName;
+    }
+
+    long getExecuteTimeMs() {
+        return mExecuteTimeMs;
+    }
+
+    @Nullable
+    private Object getOwner() {
+        return mOwnerReference == null ? null : mOwnerReference.get();
+    }
+
+    /**
+     * Returns a description of every bound task which is still queued or running, while its owner has been
+     * garbage collected. Useful for finding tasks that do work nobody is waiting for anymore.
+     */
+    @NotNull
+    public static List<String> getOutlivedOwnerReport() {
+        return BoundTaskTracker.createReport();
+    }
+
+    /**
+     * A FutureTask which stops tracking this task once it is done, including when it is cancelled before it runs.
+     */
+    private class TrackedFutureTask extends FutureTask<Void> {
+
+        private volatile boolean mIsStarted;
+
+        TrackedFutureTask(@NotNull final Task<ResultT> task) {
+            super(task, null);
+        }
+
+        @Override
+        public void run() {
+            mIsStarted = true;
+            try {
+                super.run();
+            } finally {
+                BoundTaskTracker.onFinished(AsyncTask.this);
+            }
+        }
+
+        @Override
+        protected void done() {
+            /* A task which is cancelled before it runs is never run, or its run returns right away */
+            if (isCancelled() && !mIsStarted) {
+                BoundTaskTracker.onFinished(AsyncTask.this);
+            }
+        }
+    }
+
     public interface PreExecuteRunnable {
 
         void onPreExecute();
@@ -0,0 +1,65 @@
+package com.label305.stan.async;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps track of the bound {@link AsyncTask}s which are in flight, to report the ones that outlive their owners.
+ */
+final class BoundTaskTracker {
+
+    private static final String ASYNC_PACKAGE = BoundTaskTracker.class.getPackage().getName();
+
+    private static final Set<AsyncTask<?>> IN_FLIGHT_TASKS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<AsyncTask<?>, Boolean>()));
+
+    private BoundTaskTracker() {
+    }
+
+    static void onExecute(@NotNull final AsyncTask<?> task) {
+        IN_FLIGHT_TASKS.add(task);
+    }
+
+    static void onFinished(@NotNull final AsyncTask<?> task) {
+        IN_FLIGHT_TASKS.remove(task);
+    }
+
+    @NotNull
+    static List<String> createReport() {
+        List<AsyncTask<?>> tasks;
+        synchronized (IN_FLIGHT_TASKS) {
+            tasks = new ArrayList<>(IN_FLIGHT_TASKS);
+        }
+
+        List<String> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (AsyncTask<?> task : tasks) {
+            if (task.isOwnerCollected()) {
+                result.add(task.getClass().getName() + " outlived its owner " + task.getOwnerClassName()
+                        + ", launched at " + findLaunchFrame(task.getLaunchLocation())
+                        + ", in flight for " + (now - task.getExecuteTimeMs()) + "ms");
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private static StackTraceElement findLaunchFrame(@Nullable final StackTraceElement[] launchLocation) {
+        if (launchLocation == null) {
+            return null;
+        }
+
+        for (StackTraceElement element : launchLocation) {
+            String className = element.getClassName();
+            if (!className.startsWith(ASYNC_PACKAGE) && !className.startsWith("java.") && !className.startsWith("dalvik.")) {
+                return element;
+            }
+        }
+        return null;
+    }
+}
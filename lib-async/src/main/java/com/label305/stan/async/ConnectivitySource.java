@@ -0,0 +1,29 @@
+package com.label305.stan.async;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A source of connectivity information, used by a {@link RetryGate} to decide whether retries should be parked.
+ * Implement this interface to provide a custom, or a local stand-in, source.
+ *
+ * @see AndroidConnectivitySource
+ */
+public interface ConnectivitySource {
+
+    /**
+     * Returns whether the device is currently connected to a network.
+     */
+    boolean isConnected();
+
+    /**
+     * Sets the Listener which should be notified when the connectivity changes.
+     *
+     * @param listener the Listener, or null to stop listening.
+     */
+    void setListener(@Nullable Listener listener);
+
+    interface Listener {
+
+        void onConnectivityChanged(boolean isConnected);
+    }
+}
@@ -1,6 +1,7 @@
 package com.label305.stan.async;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 
@@ -13,6 +14,11 @@ public abstract class ExponentialBackoffAsyncTask<ResultT> extends AsyncTask<Res
 
     private int mMaxTryCount;
 
+    private int mPriority;
+
+    @Nullable
+    private RetryGate mRetryGate;
+
     protected ExponentialBackoffAsyncTask() {
         mMaxTryCount = DEFAULT_MAX_TRY_COUNT;
     }
@@ -30,10 +36,70 @@ public abstract class ExponentialBackoffAsyncTask<ResultT> extends AsyncTask<Res
         return e instanceof IOException && tryCount < mMaxTryCount;
     }
 
+    /**
+     * Returns whether given Exception was caused by a network failure.
+     * If a {@link RetryGate} is set and the device is offline, such failures don't count as a try,
+     * and the retry is parked until connectivity is restored.
+     * Defaults to {@code e instanceof IOException}.
+     *
+     * @param e the Exception that occurred.
+     *
+     * @return true if the Exception was caused by a network failure.
+     */
+    protected boolean isNetworkFailure(@NotNull final Exception e) {
+        return e instanceof IOException;
+    }
+
     public void setMaxTryCount(final int maxTryCount) {
         mMaxTryCount = maxTryCount;
     }
 
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Sets the priority of this task. When connectivity is restored, parked retries with a higher priority are resumed first.
+     * Defaults to 0.
+     */
+    public void setPriority(final int priority) {
+        mPriority = priority;
+    }
+
+    @Nullable
+    public RetryGate getRetryGate() {
+        return mRetryGate;
+    }
+
+    /**
+     * Sets the {@link RetryGate} which parks retries while the device is offline.
+     *
+     * @param retryGate the RetryGate, or null to retry regardless of connectivity.
+     */
+    public void setRetryGate(@Nullable final RetryGate retryGate) {
+        mRetryGate = retryGate;
+    }
+
+    @Override
+    public boolean cancel() {
+        boolean result = super.cancel();
+        releaseParkedRetry();
+        return result;
+    }
+
+    @Override
+    public boolean cancelInterrupt() {
+        boolean result = super.cancelInterrupt();
+        releaseParkedRetry();
+        return result;
+    }
+
+    private void releaseParkedRetry() {
+        if (mRetryGate != null) {
+            mRetryGate.release(this);
+        }
+    }
+
     @NotNull
     @SuppressWarnings("RefusedBequest")
     @Override
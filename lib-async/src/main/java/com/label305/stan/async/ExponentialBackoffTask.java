@@ -41,10 +41,15 @@ class ExponentialBackoffTask<ResultT> extends Task<ResultT> {
 
     @Nullable
     private ResultT executeCall() throws CallExceptionThrownException {
-        try {
-            Thread.sleep(getTryDelayMs());
-        } catch (InterruptedException ignored) {
-            /* We don't want our sleep method to be the cause of an unwanted exception, so we ignore this and continue */
+        if (!awaitConnectivity()) {
+            try {
+                Thread.sleep(getTryDelayMs());
+            } catch (InterruptedException ignored) {
+                /* We don't want our sleep method to be the cause of an unwanted exception, so we ignore this and continue */
+            }
+        } else if (getParent().isCancelled()) {
+            /* The task was cancelled while parked */
+            return null;
         }
         mTryCount++;
         ResultT result = null;
@@ -55,9 +60,14 @@ class ExponentialBackoffTask<ResultT> extends Task<ResultT> {
         } catch (RuntimeException e) {
             doRuntimeException(e);
         } catch (final Exception e) {
-            if (getParent().shouldRetry(e, mTryCount)) {
+            if (isOfflineNetworkFailure(e)) {
+                /* This try could never have succeeded, so it doesn't count */
+                mTryCount--;
+                result = executeCall();
+                failed = false;
+            } else if (getParent().shouldRetry(e, mTryCount)) {
                 incrementTryDelay();
-                executeCall();
+                result = executeCall();
                 failed = false;
             } else {
                 doException(e);
@@ -71,6 +81,21 @@ class ExponentialBackoffTask<ResultT> extends Task<ResultT> {
         return result;
     }
 
+    /**
+     * Parks the current thread while the device is offline, if the parent has a {@link RetryGate}.
+     *
+     * @return true if the current thread was parked.
+     */
+    private boolean awaitConnectivity() {
+        RetryGate retryGate = getParent().getRetryGate();
+        return retryGate != null && retryGate.await(getParent());
+    }
+
+    private boolean isOfflineNetworkFailure(@NotNull final Exception e) {
+        RetryGate retryGate = getParent().getRetryGate();
+        return retryGate != null && getParent().isNetworkFailure(e) && !retryGate.isConnected();
+    }
+
     private long getTryDelayMs() {
         return mNextTryDelay;
     }
@@ -0,0 +1,185 @@
+package com.label305.stan.async;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Describes when an {@link AsyncTask} should launch a second, hedged attempt of its {@link AsyncTask#call()} method.
+ * <p/>
+ * If the first attempt hasn't finished after the hedge delay, a second attempt is started.
+ * Whichever attempt finishes first provides the result, the other one is cancelled.
+ * The hedge delay is either fixed, or learned from the latencies of earlier calls using the same policy.
+ * <p/>
+ * To keep hedging from overloading the backend, at most {@link #getMaxHedgeRatio()} hedged attempts
+ * are launched per call executed with this policy.
+ * <p/>
+ * Only use hedging for tasks whose {@link AsyncTask#call()} is idempotent and safe to run concurrently.
+ * A single policy instance can, and usually should, be shared between tasks doing the same kind of work.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class HedgePolicy {
+
+    public static final float DEFAULT_MAX_HEDGE_RATIO = 0.05f;
+
+    private static final int SAMPLE_COUNT = 64;
+
+    private static final int MIN_SAMPLE_COUNT = 16;
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool();
+
+    private final long mInitialDelayMs;
+
+    private final float mPercentile;
+
+    @NotNull
+    private final long[] mSamples = new long[SAMPLE_COUNT];
+
+    private int mSampleIndex;
+
+    private int mSampleCount;
+
+    @NotNull
+    private final AtomicLong mCallCount = new AtomicLong();
+
+    @NotNull
+    private final AtomicLong mHedgeCount = new AtomicLong();
+
+    private float mMaxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+    @NotNull
+    private ExecutorService mExecutor = DEFAULT_EXECUTOR;
+
+    private HedgePolicy(final long initialDelayMs, final float percentile) {
+        mInitialDelayMs = initialDelayMs;
+        mPercentile = percentile;
+    }
+
+    /**
+     * Creates a HedgePolicy which launches a hedged attempt after a fixed delay.
+     *
+     * @param delayMs the number of milliseconds to wait for the first attempt.
+     */
+    @NotNull
+    public static HedgePolicy fixedDelay(final long delayMs) {
+        return new HedgePolicy(delayMs, 0);
+    }
+
+    /**
+     * Creates a HedgePolicy which launches a hedged attempt when the first attempt takes longer than
+     * the given percentile of recently observed latencies.
+     * Until enough latencies have been observed, {@code initialDelayMs} is used.
+     *
+     * @param percentile     the latency percentile, between 0 and 1 exclusive. For example, 0.95f for the p95.
+     * @param initialDelayMs the delay to use until enough latencies have been observed.
+     */
+    @NotNull
+    public static HedgePolicy latencyPercentile(final float percentile, final long initialDelayMs) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile should be between 0 and 1 exclusive: " + percentile);
+        }
+        return new HedgePolicy(initialDelayMs, percentile);
+    }
+
+    /**
+     * Sets the maximum number of hedged attempts per executed call, for example 0.05f for 5% extra load.
+     * Defaults to {@link #DEFAULT_MAX_HEDGE_RATIO}.
+     *
+     * @return this instance.
+     */
+    @NotNull
+    public HedgePolicy setMaxHedgeRatio(final float maxHedgeRatio) {
+        mMaxHedgeRatio = maxHedgeRatio;
+        return this;
+    }
+
+    public float getMaxHedgeRatio() {
+        return mMaxHedgeRatio;
+    }
+
+    /**
+     * Sets the ExecutorService the attempts are run on. This should not be the Executor the AsyncTask itself
+     * is executed on, since the AsyncTask waits for its attempts to finish.
+     * Defaults to a cached thread pool.
+     *
+     * @return this instance.
+     */
+    @NotNull
+    public HedgePolicy setExecutor(@NotNull final ExecutorService executor) {
+        mExecutor = executor;
+        return this;
+    }
+
+    @NotNull
+    public ExecutorService getExecutor() {
+        return mExecutor;
+    }
+
+    /**
+     * Returns the number of milliseconds to wait for the first attempt before launching a hedged attempt.
+     */
+    public long getHedgeDelayMs() {
+        if (mPercentile == 0) {
+            return mInitialDelayMs;
+        }
+
+        long[] samples;
+        synchronized (mSamples) {
+            if (mSampleCount < MIN_SAMPLE_COUNT) {
+                return mInitialDelayMs;
+            }
+            samples = Arrays.copyOf(mSamples, mSampleCount);
+        }
+        Arrays.sort(samples);
+        return samples[(int) (mPercentile * (samples.length - 1))];
+    }
+
+    /**
+     * Returns the number of calls executed with this policy.
+     */
+    public long getCallCount() {
+        return mCallCount.get();
+    }
+
+    /**
+     * Returns the number of hedged attempts launched with this policy.
+     */
+    public long getHedgeCount() {
+        return mHedgeCount.get();
+    }
+
+    void onCallStarted() {
+        mCallCount.incrementAndGet();
+    }
+
+    /**
+     * Claims a hedged attempt from the budget.
+     *
+     * @return true if a hedged attempt may be launched.
+     */
+    boolean tryAcquireHedge() {
+        long hedgeCount;
+        do {
+            hedgeCount = mHedgeCount.get();
+            if (hedgeCount + 1 > mMaxHedgeRatio * mCallCount.get()) {
+                return false;
+            }
+        } while (!mHedgeCount.compareAndSet(hedgeCount, hedgeCount + 1));
+        return true;
+    }
+
+    void onCallFinished(final long latencyMs) {
+        if (mPercentile == 0) {
+            return;
+        }
+
+        synchronized (mSamples) {
+            mSamples[mSampleIndex] = latencyMs;
+            mSampleIndex = (mSampleIndex + 1) % SAMPLE_COUNT;
+            mSampleCount = Math.min(mSampleCount + 1, SAMPLE_COUNT);
+        }
+    }
+}
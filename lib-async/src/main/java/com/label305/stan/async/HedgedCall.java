@@ -0,0 +1,86 @@
+package com.label305.stan.async;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the {@link AsyncTask#call()} method of an AsyncTask according to a {@link HedgePolicy}.
+ * Returns the result of the first attempt to succeed, and cancels the other attempt.
+ */
+class HedgedCall<ResultT> implements Callable<ResultT> {
+
+    @NotNull
+    private final AsyncTask<ResultT> mParent;
+
+    @NotNull
+    private final HedgePolicy mHedgePolicy;
+
+    HedgedCall(@NotNull final AsyncTask<ResultT> parent, @NotNull final HedgePolicy hedgePolicy) {
+        mParent = parent;
+        mHedgePolicy = hedgePolicy;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("ProhibitedExceptionDeclared")
+    public ResultT call() throws Exception {
+        CompletionService<ResultT> completionService = new ExecutorCompletionService<>(mHedgePolicy.getExecutor());
+        List<Future<ResultT>> attempts = new ArrayList<>(2);
+
+        long startMs = System.currentTimeMillis();
+        mHedgePolicy.onCallStarted();
+        attempts.add(completionService.submit(mParent));
+
+        try {
+            Future<ResultT> completed = completionService.poll(mHedgePolicy.getHedgeDelayMs(), TimeUnit.MILLISECONDS);
+            if (completed == null && mHedgePolicy.tryAcquireHedge()) {
+                attempts.add(completionService.submit(mParent));
+            }
+
+            Throwable failure = null;
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                if (completed == null) {
+                    completed = completionService.take();
+                }
+
+                try {
+                    ResultT result = completed.get();
+                    /* If the hedged attempt won, this is a lower bound of the first attempt's latency */
+                    mHedgePolicy.onCallFinished(System.currentTimeMillis() - startMs);
+                    return result;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+                completed = null;
+            }
+
+            throw asException(failure);
+        } finally {
+            for (Future<ResultT> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    @NotNull
+    private static Exception asException(@Nullable final Throwable throwable) {
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        if (throwable instanceof Exception) {
+            return (Exception) throwable;
+        }
+        return new ExecutionException(throwable);
+    }
+}
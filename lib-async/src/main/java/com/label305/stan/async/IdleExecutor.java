@@ -0,0 +1,271 @@
+package com.label305.stan.async;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+import android.widget.AbsListView;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An Executor for low priority work, such as cache warmups, cache pruning and analytics flushes.
+ * <p/>
+ * Commands are only started when the main looper is idle, no scroll or fling is in progress,
+ * and no foreground {@link AsyncTask} was executed recently. Commands run on low priority threads,
+ * which are given up as soon as there is no more idle work to start.
+ * A command which has been deferred for longer than {@link #getMaxDeferralMs()} is started regardless.
+ * <p/>
+ * Idle work only yields to foreground work between commands: these conditions are checked again before each command is started,
+ * but a command which has started runs to completion, at the lowest thread priority. Split long work into several commands,
+ * so it can be held back in between.
+ * <p/>
+ * Use {@link AsyncTask#setExecutor(Executor)} to execute an AsyncTask in the idle lane.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class IdleExecutor implements Executor {
+
+    public static final long DEFAULT_MAX_DEFERRAL_MS = 5000;
+
+    private static final int DEFAULT_CONCURRENCY = 1;
+
+    /**
+     * The time after foreground work was started during which no idle work is started.
+     */
+    private static final long FOREGROUND_QUIET_MS = 500;
+
+    private static final long KEEP_ALIVE_MS = 100;
+
+    private static volatile long sLastForegroundWorkMs;
+
+    @Nullable
+    private static IdleExecutor sInstance;
+
+    @NotNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    @NotNull
+    private final Queue<IdleRunnable> mPending = new ArrayDeque<>();
+
+    @NotNull
+    private final ThreadPoolExecutor mWorkerExecutor;
+
+    private final int mConcurrency;
+
+    private final MessageQueue.IdleHandler mIdleHandler = new DispatchIdleHandler();
+
+    private final Runnable mDispatchRunnable = new DispatchRunnable();
+
+    private final Runnable mDeadlineRunnable = new DeadlineRunnable();
+
+    private long mMaxDeferralMs = DEFAULT_MAX_DEFERRAL_MS;
+
+    private volatile boolean mIsScrolling;
+
+    /**
+     * Only accessed on the main thread.
+     */
+    private boolean mIsIdleHandlerRegistered;
+
+    private int mRunningCount;
+
+    /**
+     * Create a new IdleExecutor, which runs at most {@code concurrency} commands at the same time.
+     */
+    public IdleExecutor(final int concurrency) {
+        mConcurrency = concurrency;
+        mWorkerExecutor = new ThreadPoolExecutor(concurrency, concurrency, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new IdleThreadFactory());
+        mWorkerExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the shared IdleExecutor, which runs one command at a time.
+     */
+    @NotNull
+    public static IdleExecutor getInstance() {
+        synchronized (IdleExecutor.class) {
+            if (sInstance == null) {
+                sInstance = new IdleExecutor(DEFAULT_CONCURRENCY);
+            }
+            return sInstance;
+        }
+    }
+
+    /**
+     * Notifies the idle lanes that foreground work has started, and idle work should be held back.
+     * Called by {@link AsyncTask} when it is executed on an Executor other than an IdleExecutor.
+     */
+    public static void onForegroundWork() {
+        sLastForegroundWorkMs = System.currentTimeMillis();
+    }
+
+    public long getMaxDeferralMs() {
+        return mMaxDeferralMs;
+    }
+
+    /**
+     * Sets the maximum time a command may be deferred before it is started regardless of idleness.
+     * Defaults to {@link #DEFAULT_MAX_DEFERRAL_MS}.
+     */
+    public void setMaxDeferralMs(final long maxDeferralMs) {
+        mMaxDeferralMs = maxDeferralMs;
+    }
+
+    /**
+     * Sets whether a scroll or fling is in progress. While scrolling, no idle work is started.
+     *
+     * @see OnScrollListener
+     */
+    public void setScrolling(final boolean isScrolling) {
+        mIsScrolling = isScrolling;
+        if (!isScrolling) {
+            mMainHandler.post(mDispatchRunnable);
+        }
+    }
+
+    public boolean isScrolling() {
+        return mIsScrolling;
+    }
+
+    @Override
+    public void execute(@NotNull final Runnable command) {
+        synchronized (this) {
+            mPending.add(new IdleRunnable(command, System.currentTimeMillis()));
+        }
+        mMainHandler.post(mDispatchRunnable);
+        mMainHandler.postDelayed(mDeadlineRunnable, mMaxDeferralMs);
+    }
+
+    /**
+     * Starts as many pending commands as allowed.
+     *
+     * @param isIdle whether the main looper is idle.
+     *
+     * @return true if commands are still pending.
+     */
+    private boolean dispatch(final boolean isIdle) {
+        long now = System.currentTimeMillis();
+        long foregroundQuietRemainingMs = sLastForegroundWorkMs + FOREGROUND_QUIET_MS - now;
+        boolean mayStartIdleWork = isIdle && !mIsScrolling && foregroundQuietRemainingMs <= 0;
+
+        synchronized (this) {
+            while (!mPending.isEmpty() && mRunningCount < mConcurrency) {
+                IdleRunnable next = mPending.peek();
+                boolean isOverdue = now - next.mEnqueuedMs >= mMaxDeferralMs;
+                if (!mayStartIdleWork && !isOverdue) {
+                    break;
+                }
+
+                mPending.remove();
+                mRunningCount++;
+                mWorkerExecutor.execute(next);
+            }
+
+            if (!mPending.isEmpty() && foregroundQuietRemainingMs > 0) {
+                mMainHandler.postDelayed(mDispatchRunnable, foregroundQuietRemainingMs);
+            }
+            return !mPending.isEmpty();
+        }
+    }
+
+    private class DispatchRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            /* Registering the IdleHandler causes it to be called as soon as the main looper is idle */
+            if (!mIsIdleHandlerRegistered) {
+                mIsIdleHandlerRegistered = true;
+                Looper.myQueue().addIdleHandler(mIdleHandler);
+            }
+        }
+    }
+
+    private class DeadlineRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            dispatch(false);
+        }
+    }
+
+    private class DispatchIdleHandler implements MessageQueue.IdleHandler {
+
+        @Override
+        public boolean queueIdle() {
+            mIsIdleHandlerRegistered = dispatch(true);
+            return mIsIdleHandlerRegistered;
+        }
+    }
+
+    private class IdleRunnable implements Runnable {
+
+        @NotNull
+        private final Runnable mCommand;
+
+        private final long mEnqueuedMs;
+
+        IdleRunnable(@NotNull final Runnable command, final long enqueuedMs) {
+            mCommand = command;
+            mEnqueuedMs = enqueuedMs;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mCommand.run();
+            } finally {
+                synchronized (IdleExecutor.this) {
+                    mRunningCount--;
+                }
+                mMainHandler.post(mDispatchRunnable);
+            }
+        }
+    }
+
+    private static class IdleThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(@NotNull final Runnable runnable) {
+            return new Thread(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                            runnable.run();
+                        }
+                    }, "IdleExecutor"
+            );
+        }
+    }
+
+    /**
+     * An {@link AbsListView.OnScrollListener} which holds back idle work while the list scrolls or flings.
+     */
+    public static class OnScrollListener implements AbsListView.OnScrollListener {
+
+        @NotNull
+        private final IdleExecutor mIdleExecutor;
+
+        public OnScrollListener(@NotNull final IdleExecutor idleExecutor) {
+            mIdleExecutor = idleExecutor;
+        }
+
+        @Override
+        public void onScrollStateChanged(final AbsListView view, final int scrollState) {
+            mIdleExecutor.setScrolling(scrollState != SCROLL_STATE_IDLE);
+        }
+
+        @Override
+        public void onScroll(final AbsListView view, final int firstVisibleItem, final int visibleItemCount, final int totalItemCount) {
+        }
+    }
+}
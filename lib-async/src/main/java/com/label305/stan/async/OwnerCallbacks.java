@@ -0,0 +1,37 @@
+package com.label305.stan.async;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Callbacks for an {@link AsyncTask} which is bound to an owner, such as an Activity or a View,
+ * using {@link AsyncTask#bindTo(Object, OwnerCallbacks)}.
+ * <p/>
+ * The AsyncTask only holds its owner weakly, and passes it to these callbacks while it is still alive.
+ * Once the owner has been garbage collected, callbacks are no longer delivered.
+ * To prevent the owner from being retained anyway, implementations should not reference the owner themselves:
+ * use a static nested class or a top-level class, and use the owner parameter instead.
+ * <p/>
+ * All callbacks are called on the original thread. By default, callbacks do nothing.
+ *
+ * @param <OwnerT>  the type of the owner.
+ * @param <ResultT> the type of the result.
+ */
+@SuppressWarnings({"UnusedDeclaration", "NoopMethodInAbstractClass"})
+public abstract class OwnerCallbacks<OwnerT, ResultT> {
+
+    public void onPreExecute(@NotNull final OwnerT owner) {
+    }
+
+    public void onSuccess(@NotNull final OwnerT owner, @Nullable final ResultT result) {
+    }
+
+    public void onCancelled(@NotNull final OwnerT owner) {
+    }
+
+    public void onException(@NotNull final OwnerT owner, @NotNull final Exception e) {
+    }
+
+    public void onFinally(@NotNull final OwnerT owner) {
+    }
+}
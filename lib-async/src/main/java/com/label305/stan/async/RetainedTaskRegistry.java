@@ -0,0 +1,267 @@
+package com.label305.stan.async;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A registry which retains running {@link AsyncTask}s and their results across configuration changes.
+ * <p/>
+ * Instead of cancelling and restarting a task when an Activity is recreated, execute it through this registry
+ * with a key. The new Activity instance reattaches to the running task or its completed result using the same key:
+ * <pre>
+ * protected void onCreate(Bundle savedInstanceState) {
+ *     RetainedTaskRegistry.getInstance().execute("load", new LoadTask(), this);
+ * }
+ *
+ * protected void onDestroy() {
+ *     if (isChangingConfigurations()) {
+ *         RetainedTaskRegistry.getInstance().detach("load");
+ *     } else {
+ *         RetainedTaskRegistry.getInstance().cancel("load");
+ *     }
+ * }
+ * </pre>
+ * A result is delivered to the attached {@link Listener} once, after which it is removed from the registry.
+ * Results which nobody reattaches to within {@link #getReleaseTimeoutMs()} are released.
+ * <p/>
+ * The registry replaces the success, exception and cancelled runnables of the tasks it executes.
+ * Retained tasks outlive their Activity, so they should not be (anonymous) inner classes of it.
+ * All methods must be called on the main thread.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class RetainedTaskRegistry {
+
+    public static final long DEFAULT_RELEASE_TIMEOUT_MS = 30000;
+
+    @Nullable
+    private static RetainedTaskRegistry sInstance;
+
+    @NotNull
+    private final Map<String, Entry<?>> mEntries = new HashMap<>();
+
+    @NotNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private long mReleaseTimeoutMs = DEFAULT_RELEASE_TIMEOUT_MS;
+
+    @NotNull
+    public static RetainedTaskRegistry getInstance() {
+        synchronized (RetainedTaskRegistry.class) {
+            if (sInstance == null) {
+                sInstance = new RetainedTaskRegistry();
+            }
+            return sInstance;
+        }
+    }
+
+    public long getReleaseTimeoutMs() {
+        return mReleaseTimeoutMs;
+    }
+
+    /**
+     * Sets the time a completed result is retained when no Listener is attached.
+     * Defaults to {@link #DEFAULT_RELEASE_TIMEOUT_MS}.
+     */
+    public void setReleaseTimeoutMs(final long releaseTimeoutMs) {
+        mReleaseTimeoutMs = releaseTimeoutMs;
+    }
+
+    /**
+     * Executes given task under given key, and attaches given Listener to it.
+     * If a task is already retained under this key, given task is not executed,
+     * and the Listener is attached to the retained task instead.
+     *
+     * @return the retained task.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public <ResultT> AsyncTask<ResultT> execute(@NotNull final String key, @NotNull final AsyncTask<ResultT> task, @Nullable final Listener<ResultT> listener) {
+        Entry<ResultT> entry = (Entry<ResultT>) mEntries.get(key);
+        if (entry == null) {
+            entry = new Entry<>(key, task);
+            mEntries.put(key, entry);
+            task.execute();
+        }
+
+        entry.attach(listener);
+        return entry.mTask;
+    }
+
+    /**
+     * Attaches given Listener to the task retained under given key.
+     * If the task has completed, the result is delivered immediately.
+     *
+     * @return false if no task is retained under given key.
+     */
+    @SuppressWarnings("unchecked")
+    public <ResultT> boolean attach(@NotNull final String key, @NotNull final Listener<ResultT> listener) {
+        Entry<ResultT> entry = (Entry<ResultT>) mEntries.get(key);
+        if (entry == null) {
+            return false;
+        }
+
+        entry.attach(listener);
+        return true;
+    }
+
+    /**
+     * Detaches the Listener from the task retained under given key.
+     * The task keeps running, and its result is retained until a Listener is attached or the release timeout expires.
+     */
+    public void detach(@NotNull final String key) {
+        Entry<?> entry = mEntries.get(key);
+        if (entry != null) {
+            entry.attach(null);
+        }
+    }
+
+    /**
+     * Cancels the task retained under given key, and removes it from the registry.
+     */
+    public void cancel(@NotNull final String key) {
+        Entry<?> entry = mEntries.remove(key);
+        if (entry != null) {
+            mMainHandler.removeCallbacks(entry);
+            entry.mListener = null;
+            entry.mTask.cancel();
+        }
+    }
+
+    /**
+     * Returns whether a task or its result is retained under given key.
+     */
+    public boolean contains(@NotNull final String key) {
+        return mEntries.containsKey(key);
+    }
+
+    public interface Listener<ResultT> {
+
+        void onSuccess(@Nullable ResultT result);
+
+        void onException(@NotNull Exception e);
+
+        void onCancelled();
+    }
+
+    private enum State {RUNNING, SUCCEEDED, FAILED, CANCELLED}
+
+    /**
+     * Holds a retained task and its result. Runs as the release timeout.
+     */
+    private class Entry<ResultT> implements Runnable, AsyncTask.SuccessRunnable<ResultT>, AsyncTask.ExceptionRunnable, AsyncTask.CancelledRunnable, AsyncTask.FinallyRunnable {
+
+        @NotNull
+        private final String mKey;
+
+        @NotNull
+        private final AsyncTask<ResultT> mTask;
+
+        @Nullable
+        private Listener<ResultT> mListener;
+
+        @NotNull
+        private State mState = State.RUNNING;
+
+        @Nullable
+        private ResultT mResult;
+
+        @Nullable
+        private Exception mException;
+
+        Entry(@NotNull final String key, @NotNull final AsyncTask<ResultT> task) {
+            mKey = key;
+            mTask = task;
+            task.onSuccess(this);
+            task.onException(this);
+            task.onCancelled(this);
+            task.onFinally(this);
+        }
+
+        void attach(@Nullable final Listener<ResultT> listener) {
+            mListener = listener;
+            mMainHandler.removeCallbacks(this);
+            if (mState != State.RUNNING) {
+                deliverOrScheduleRelease();
+            }
+        }
+
+        @Override
+        public void onSuccess(@Nullable final ResultT r) {
+            mResult = r;
+            mState = State.SUCCEEDED;
+        }
+
+        @Override
+        public void onException(@NotNull final Exception e) {
+            mException = e;
+            mState = State.FAILED;
+        }
+
+        @Override
+        public void onCancelled() {
+            mState = State.CANCELLED;
+        }
+
+        @Override
+        public void onFinally() {
+            if (mEntries.get(mKey) != this) {
+                /* The task was cancelled through the registry */
+                return;
+            }
+
+            if (mState == State.RUNNING) {
+                /* The task threw a RuntimeException, there is nothing to retain */
+                release();
+            } else {
+                deliverOrScheduleRelease();
+            }
+        }
+
+        /**
+         * Called when the release timeout expires.
+         */
+        @Override
+        public void run() {
+            release();
+        }
+
+        private void deliverOrScheduleRelease() {
+            if (mListener == null) {
+                mMainHandler.removeCallbacks(this);
+                mMainHandler.postDelayed(this, mReleaseTimeoutMs);
+                return;
+            }
+
+            Listener<ResultT> listener = mListener;
+            release();
+            switch (mState) {
+                case SUCCEEDED:
+                    listener.onSuccess(mResult);
+                    break;
+                case FAILED:
+                    //noinspection ConstantConditions
+                    listener.onException(mException);
+                    break;
+                case CANCELLED:
+                    listener.onCancelled();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void release() {
+            mMainHandler.removeCallbacks(this);
+            if (mEntries.get(mKey) == this) {
+                mEntries.remove(mKey);
+            }
+            mListener = null;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.label305.stan.async;
+
+import android.content.Context;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parks retries of {@link ExponentialBackoffAsyncTask}s while the device is offline.
+ * <p/>
+ * When connectivity is restored, parked retries are resumed one by one in order of
+ * {@link ExponentialBackoffAsyncTask#getPriority()}, spaced by {@link #getFlushIntervalMs()},
+ * instead of all at once.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class RetryGate implements ConnectivitySource.Listener {
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 200;
+
+    private static final ScheduledExecutorService FLUSH_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+
+    @Nullable
+    private static RetryGate sInstance;
+
+    @NotNull
+    private final ConnectivitySource mConnectivitySource;
+
+    @NotNull
+    private final PriorityQueue<ParkedRetry> mParkedRetries = new PriorityQueue<>();
+
+    private final Runnable mFlushRunnable = new FlushRunnable();
+
+    private long mFlushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+
+    private long mParkCount;
+
+    private boolean mIsFlushing;
+
+    /**
+     * Create a new RetryGate which uses given ConnectivitySource.
+     * The RetryGate registers itself as the ConnectivitySource's listener.
+     */
+    public RetryGate(@NotNull final ConnectivitySource connectivitySource) {
+        mConnectivitySource = connectivitySource;
+        mConnectivitySource.setListener(this);
+    }
+
+    /**
+     * Returns a shared RetryGate backed by an {@link AndroidConnectivitySource}.
+     */
+    @NotNull
+    public static RetryGate getInstance(@NotNull final Context context) {
+        synchronized (RetryGate.class) {
+            if (sInstance == null) {
+                sInstance = new RetryGate(new AndroidConnectivitySource(context));
+            }
+            return sInstance;
+        }
+    }
+
+    public boolean isConnected() {
+        return mConnectivitySource.isConnected();
+    }
+
+    public long getFlushIntervalMs() {
+        return mFlushIntervalMs;
+    }
+
+    /**
+     * Sets the time between resuming two parked retries when connectivity is restored.
+     * Defaults to {@link #DEFAULT_FLUSH_INTERVAL_MS}.
+     */
+    public void setFlushIntervalMs(final long flushIntervalMs) {
+        mFlushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * Returns the number of retries currently parked.
+     */
+    public synchronized int getParkedCount() {
+        return mParkedRetries.size();
+    }
+
+    /**
+     * Blocks the calling thread while the device is offline.
+     *
+     * @param task the task which wants to retry.
+     *
+     * @return true if the calling thread was parked.
+     */
+    boolean await(@NotNull final ExponentialBackoffAsyncTask<?> task) {
+        ParkedRetry parkedRetry;
+        synchronized (this) {
+            if (mConnectivitySource.isConnected()) {
+                return false;
+            }
+            parkedRetry = new ParkedRetry(task, mParkCount++);
+            mParkedRetries.add(parkedRetry);
+        }
+
+        try {
+            parkedRetry.mLatch.await();
+        } catch (InterruptedException ignored) {
+            /* Like the backoff sleep, an interruption just stops waiting */
+            synchronized (this) {
+                mParkedRetries.remove(parkedRetry);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Immediately resumes the parked retry of given task, if any.
+     */
+    synchronized void release(@NotNull final ExponentialBackoffAsyncTask<?> task) {
+        Iterator<ParkedRetry> iterator = mParkedRetries.iterator();
+        while (iterator.hasNext()) {
+            ParkedRetry parkedRetry = iterator.next();
+            if (parkedRetry.mTask == task) {
+                iterator.remove();
+                parkedRetry.mLatch.countDown();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onConnectivityChanged(final boolean isConnected) {
+        if (isConnected && !mIsFlushing && !mParkedRetries.isEmpty()) {
+            mIsFlushing = true;
+            FLUSH_EXECUTOR.execute(mFlushRunnable);
+        }
+    }
+
+    private class FlushRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            synchronized (RetryGate.this) {
+                if (!mConnectivitySource.isConnected() || mParkedRetries.isEmpty()) {
+                    mIsFlushing = false;
+                    return;
+                }
+
+                mParkedRetries.poll().mLatch.countDown();
+
+                if (mParkedRetries.isEmpty()) {
+                    mIsFlushing = false;
+                } else {
+                    FLUSH_EXECUTOR.schedule(this, mFlushIntervalMs, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private static class ParkedRetry implements Comparable<ParkedRetry> {
+
+        @NotNull
+        private final ExponentialBackoffAsyncTask<?> mTask;
+
+        private final int mPriority;
+
+        private final long mSequence;
+
+        @NotNull
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+
+        private ParkedRetry(@NotNull final ExponentialBackoffAsyncTask<?> task, final long sequence) {
+            mTask = task;
+            mPriority = task.getPriority();
+            mSequence = sequence;
+        }
+
+        @Override
+        public int compareTo(@NotNull final ParkedRetry another) {
+            if (mPriority != another.mPriority) {
+                return mPriority > another.mPriority ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : mSequence == another.mSequence ? 0 : 1;
+        }
+    }
+}
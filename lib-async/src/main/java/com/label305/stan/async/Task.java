@@ -73,6 +73,10 @@ class Task<ResultT> implements Runnable {
     @Nullable
     @SuppressWarnings("ProhibitedExceptionDeclared")
     protected ResultT doCall() throws Exception {
+        HedgePolicy hedgePolicy = mParent.getHedgePolicy();
+        if (hedgePolicy != null) {
+            return new HedgedCall<>(mParent, hedgePolicy).call();
+        }
         return mParent.call();
     }
 
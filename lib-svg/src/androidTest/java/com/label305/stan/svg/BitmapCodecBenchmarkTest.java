@@ -0,0 +1,94 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNull.*;
+
+/**
+ * Compares the encode time, decode time and size on disk of the {@link BitmapCodec}s of the disk cache.
+ * The results are written to the log with tag {@value #TAG}.
+ */
+@SuppressWarnings("MagicNumber")
+public class BitmapCodecBenchmarkTest extends AndroidTestCase {
+
+    private static final String TAG = "BitmapCodecBenchmark";
+
+    private static final int SIZE = 256;
+
+    private static final int RUNS = 3;
+
+    public void testPng() throws IOException {
+        Bitmap decoded = benchmark(DiskCodecPolicy.PNG, createTestBitmap(Bitmap.Config.ARGB_8888));
+
+        assertThat(decoded.sameAs(createTestBitmap(Bitmap.Config.ARGB_8888)), equalTo(true));
+    }
+
+    public void testWebp() throws IOException {
+        Bitmap decoded = benchmark(DiskCodecPolicy.WEBP_CODEC, createTestBitmap(Bitmap.Config.ARGB_8888));
+
+        assertThat(decoded.getWidth(), equalTo(SIZE));
+        assertThat(decoded.getHeight(), equalTo(SIZE));
+    }
+
+    public void testRaw() throws IOException {
+        Bitmap decoded = benchmark(DiskCodecPolicy.RAW, createTestBitmap(Bitmap.Config.ARGB_8888));
+
+        assertThat(decoded.sameAs(createTestBitmap(Bitmap.Config.ARGB_8888)), equalTo(true));
+    }
+
+    public void testRawAlpha8() throws IOException {
+        Bitmap decoded = benchmark(DiskCodecPolicy.RAW, createTestBitmap(Bitmap.Config.ALPHA_8));
+
+        assertThat(decoded.getConfig(), equalTo(Bitmap.Config.ALPHA_8));
+        assertThat(decoded.sameAs(createTestBitmap(Bitmap.Config.ALPHA_8)), equalTo(true));
+    }
+
+    private Bitmap benchmark(final BitmapCodec codec, final Bitmap bitmap) throws IOException {
+        File file = new File(getContext().getCacheDir(), "codec-benchmark." + codec.getId());
+
+        long encodeNs = Long.MAX_VALUE;
+        long decodeNs = Long.MAX_VALUE;
+        Bitmap decoded = null;
+        try {
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                codec.encode(bitmap, file);
+                encodeNs = Math.min(encodeNs, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                decoded = codec.decode(file);
+                decodeNs = Math.min(decodeNs, System.nanoTime() - start);
+            }
+
+            Log.i(TAG, String.format("%s %s %dx%d: encode %.2fms, decode %.2fms, %d bytes",
+                    codec.getId(), bitmap.getConfig(), SIZE, SIZE, encodeNs / 1.0e6, decodeNs / 1.0e6, file.length()));
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+
+        assertThat(decoded, notNullValue());
+        return decoded;
+    }
+
+    /**
+     * Creates a bitmap with a red circle on a transparent background, like a rendered icon.
+     */
+    private static Bitmap createTestBitmap(final Bitmap.Config config) {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, config);
+        Paint paint = new Paint();
+        paint.setColor(Color.RED);
+        new Canvas(bitmap).drawCircle(SIZE / 2, SIZE / 2, SIZE / 3, paint);
+        return bitmap;
+    }
+}
@@ -0,0 +1,54 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.IsNot.*;
+import static org.hamcrest.core.IsSame.*;
+
+@SuppressWarnings("MagicNumber")
+public class BitmapPoolTest extends AndroidTestCase {
+
+    public void testReleasedBitmapIsReused() {
+        BitmapPool pool = BitmapPool.getInstance();
+        Bitmap bitmap = pool.get(31, 17, Bitmap.Config.ARGB_8888);
+
+        pool.acquire(bitmap);
+        pool.release(bitmap);
+
+        assertThat(pool.get(31, 17, Bitmap.Config.ARGB_8888), sameInstance(bitmap));
+    }
+
+    public void testBitmapInUseIsNotReused() {
+        BitmapPool pool = BitmapPool.getInstance();
+        Bitmap bitmap = pool.get(37, 19, Bitmap.Config.ARGB_8888);
+
+        pool.acquire(bitmap);
+        pool.acquire(bitmap);
+        pool.release(bitmap);
+
+        assertThat(pool.get(37, 19, Bitmap.Config.ARGB_8888), not(sameInstance(bitmap)));
+    }
+
+    public void testBitmapOfTheAppIsNotReused() {
+        BitmapPool pool = BitmapPool.getInstance();
+        Bitmap bitmap = Bitmap.createBitmap(41, 23, Bitmap.Config.ARGB_8888);
+
+        pool.acquire(bitmap);
+        pool.release(bitmap);
+
+        assertThat(pool.get(41, 23, Bitmap.Config.ARGB_8888), not(sameInstance(bitmap)));
+    }
+
+    public void testDisownedBitmapIsNotReused() {
+        BitmapPool pool = BitmapPool.getInstance();
+        Bitmap bitmap = pool.get(43, 29, Bitmap.Config.ARGB_8888);
+
+        pool.disown(bitmap);
+        pool.acquire(bitmap);
+        pool.release(bitmap);
+
+        assertThat(pool.get(43, 29, Bitmap.Config.ARGB_8888), not(sameInstance(bitmap)));
+    }
+}
@@ -0,0 +1,38 @@
+package com.label305.stan.svg;
+
+import android.test.AndroidTestCase;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings("MagicNumber")
+public class BloomFilterTest extends AndroidTestCase {
+
+    public void testAddedHashesAreContained() {
+        BloomFilter bloomFilter = new BloomFilter(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            bloomFilter.add(("svg/" + i).hashCode());
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(bloomFilter.mightContain(("svg/" + i).hashCode()), is(true));
+        }
+    }
+
+    public void testMostMissingHashesAreNotContained() {
+        BloomFilter bloomFilter = new BloomFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            bloomFilter.add(("svg/" + i).hashCode());
+        }
+
+        int falsePositiveCount = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (bloomFilter.mightContain(("svg/" + i).hashCode())) {
+                falsePositiveCount++;
+            }
+        }
+
+        assertThat(falsePositiveCount, is(lessThan(1000)));
+    }
+}
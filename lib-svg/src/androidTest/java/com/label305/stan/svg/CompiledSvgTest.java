@@ -0,0 +1,186 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+
+import com.caverock.androidsvg.SVG;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.Is.*;
+
+@SuppressWarnings("MagicNumber")
+public class CompiledSvgTest extends AndroidTestCase {
+
+    /**
+     * A red square filling the view box, as written by compileSvg.gradle for the Svg of {@link #squareXml(String, String)}.
+     */
+    private static byte[] compiledSquare(final float documentWidth, final float documentHeight) throws IOException {
+        return compiledSquare(documentWidth, documentHeight, 0, 0);
+    }
+
+    private static byte[] compiledSquare(final float documentWidth, final float documentHeight, final int sourceByteCount, final int sourceChecksum)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x53564742);
+        out.writeInt(2);
+        out.writeInt(sourceByteCount);
+        out.writeInt(sourceChecksum);
+        out.writeFloat(documentWidth);
+        out.writeFloat(documentHeight);
+        out.writeByte(1);
+        for (float value : new float[]{0, 0, 10, 10}) {
+            out.writeFloat(value);
+        }
+
+        out.writeInt(1);
+        for (float value : new float[]{1, 0, 0, 1, 0, 0}) {
+            out.writeFloat(value);
+        }
+        out.writeByte(1);
+        out.writeInt(Color.RED);
+        out.writeInt(5);
+        out.writeByte(0);
+        out.writeFloat(0);
+        out.writeFloat(0);
+        out.writeByte(1);
+        out.writeFloat(10);
+        out.writeFloat(0);
+        out.writeByte(1);
+        out.writeFloat(10);
+        out.writeFloat(10);
+        out.writeByte(1);
+        out.writeFloat(0);
+        out.writeFloat(10);
+        out.writeByte(4);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static String squareXml(final String width, final String height) {
+        return "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height + "\" viewBox=\"0 0 10 10\">"
+                + "<rect width=\"10\" height=\"10\" fill=\"#FF0000\"/></svg>";
+    }
+
+    private static Bitmap render(final RenderableSvg svg, final int width, final int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        svg.renderToCanvas(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private static void assertRendersAlike(final RenderableSvg compiled, final RenderableSvg xml) {
+        Bitmap compiledBitmap = render(compiled, 200, 100);
+        Bitmap xmlBitmap = render(xml, 200, 100);
+        for (int y = 5; y < 100; y += 10) {
+            for (int x = 5; x < 200; x += 10) {
+                assertThat("pixel " + x + ", " + y, compiledBitmap.getPixel(x, y), is(xmlBitmap.getPixel(x, y)));
+            }
+        }
+    }
+
+    public void testViewBoxIsFittedIntoTheDocumentSize() throws IOException {
+        CompiledSvg svg = CompiledSvg.read(ByteBuffer.wrap(compiledSquare(100, 50)));
+
+        Bitmap bitmap = render(svg, 200, 100);
+
+        assertThat(bitmap.getPixel(50, 25), is(Color.RED));
+        assertThat(bitmap.getPixel(10, 25), is(Color.TRANSPARENT));
+        assertThat(bitmap.getPixel(50, 75), is(Color.TRANSPARENT));
+        assertThat(bitmap.getPixel(150, 50), is(Color.TRANSPARENT));
+    }
+
+    public void testViewBoxIsFittedIntoTheCanvasWithoutDocumentSize() throws IOException {
+        CompiledSvg svg = CompiledSvg.read(ByteBuffer.wrap(compiledSquare(-1, -1)));
+
+        Bitmap bitmap = render(svg, 200, 100);
+
+        assertThat(bitmap.getPixel(100, 50), is(Color.RED));
+        assertThat(bitmap.getPixel(45, 50), is(Color.TRANSPARENT));
+        assertThat(bitmap.getPixel(155, 50), is(Color.TRANSPARENT));
+    }
+
+    public void testRendersLikeAndroidSvgWithDocumentSize() throws Exception {
+        assertRendersAlike(CompiledSvg.read(ByteBuffer.wrap(compiledSquare(100, 50))), new XmlSvg(SVG.getFromString(squareXml("100", "50"))));
+    }
+
+    public void testRendersLikeAndroidSvgWithoutDocumentSize() throws Exception {
+        assertRendersAlike(CompiledSvg.read(ByteBuffer.wrap(compiledSquare(-1, -1))), new XmlSvg(SVG.getFromString(squareXml("100%", "100%"))));
+    }
+
+    public void testPictureHasTheDocumentSize() throws IOException {
+        CompiledSvg svg = CompiledSvg.read(ByteBuffer.wrap(compiledSquare(100, 50)));
+
+        assertThat(svg.renderToPicture().getWidth(), is(100));
+        assertThat(svg.renderToPicture().getHeight(), is(50));
+    }
+
+    public void testSourceOfTheResourceIsRecognized() throws IOException {
+        byte[] source = readRawResource(R.raw.ic_svg_test_square_red);
+        CRC32 checksum = new CRC32();
+        checksum.update(source);
+
+        CompiledSvg svg = CompiledSvg.read(ByteBuffer.wrap(compiledSquare(100, 50, source.length, (int) checksum.getValue())));
+
+        assertThat(svg.isCompiledFrom(getContext().getResources(), R.raw.ic_svg_test_square_red), is(true));
+    }
+
+    public void testOtherSourceIsNotRecognized() throws IOException {
+        byte[] source = readRawResource(R.raw.ic_svg_test_square_red);
+        CRC32 checksum = new CRC32();
+        checksum.update(source);
+
+        CompiledSvg otherChecksum = CompiledSvg.read(ByteBuffer.wrap(compiledSquare(100, 50, source.length, (int) checksum.getValue() + 1)));
+        CompiledSvg otherByteCount = CompiledSvg.read(ByteBuffer.wrap(compiledSquare(100, 50, source.length - 1, (int) checksum.getValue())));
+
+        assertThat(otherChecksum.isCompiledFrom(getContext().getResources(), R.raw.ic_svg_test_square_red), is(false));
+        assertThat(otherByteCount.isCompiledFrom(getContext().getResources(), R.raw.ic_svg_test_square_red), is(false));
+    }
+
+    private byte[] readRawResource(final int resourceId) throws IOException {
+        InputStream inputStream = getContext().getResources().openRawResource(resourceId);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            int count;
+            while ((count = inputStream.read(chunk)) != -1) {
+                outputStream.write(chunk, 0, count);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    public void testTruncatedSvgIsRejected() throws IOException {
+        byte[] bytes = compiledSquare(100, 50);
+
+        try {
+            CompiledSvg.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 3)));
+            fail("Expected an IOException");
+        } catch (IOException ignored) {
+            /* Expected */
+        }
+    }
+
+    public void testOtherVersionIsRejected() throws IOException {
+        byte[] bytes = compiledSquare(100, 50);
+        bytes[7] = 1;
+
+        try {
+            CompiledSvg.read(ByteBuffer.wrap(bytes));
+            fail("Expected an IOException");
+        } catch (IOException ignored) {
+            /* Expected */
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsNull.*;
+
+@SuppressWarnings("MagicNumber")
+public class DiskLruCacheTest extends AndroidTestCase {
+
+    private static final long MAX_SIZE_BYTES = 1024 * 1024;
+
+    private File mDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(getContext().getCacheDir(), "DiskLruCacheTest");
+        delete(mDirectory);
+        assertThat(mDirectory.mkdirs(), is(true));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(mDirectory);
+        super.tearDown();
+    }
+
+    private static void delete(final File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private static void createFile(final File file) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        writer.write("stale");
+        writer.close();
+    }
+
+    private DiskLruCache openCache() {
+        DiskLruCache cache = new DiskLruCache(mDirectory, MAX_SIZE_BYTES, new StatsRecorder());
+        cache.awaitWrites();
+        return cache;
+    }
+
+    private static Bitmap createBitmap() {
+        Bitmap bitmap = Bitmap.createBitmap(16, 16, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.RED);
+        return bitmap;
+    }
+
+    public void testWrittenBitmapIsRead() {
+        DiskLruCache cache = openCache();
+
+        cache.put("key", createBitmap());
+        cache.awaitWrites();
+
+        assertThat(cache.contains("key"), is(true));
+        Bitmap result = cache.get("key");
+        assertThat(result, is(notNullValue()));
+        assertThat(result.getPixel(8, 8), is(Color.RED));
+        assertThat(cache.get("other"), is(nullValue()));
+    }
+
+    public void testIndexIsRestoredFromJournal() {
+        DiskLruCache cache = openCache();
+        cache.put("first", createBitmap());
+        cache.put("second", createBitmap());
+        cache.awaitWrites();
+
+        DiskLruCache restored = openCache();
+
+        assertThat(restored.getSizeBytes(), is(cache.getSizeBytes()));
+        assertThat(restored.contains("first"), is(true));
+        assertThat(restored.get("second"), is(notNullValue()));
+    }
+
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        DiskLruCache cache = openCache();
+        cache.put("first", createBitmap());
+        cache.put("second", createBitmap());
+        cache.put("third", createBitmap());
+        cache.awaitWrites();
+        assertThat(cache.get("first"), is(notNullValue()));
+
+        cache.setMaxSizeBytes(cache.getSizeBytes() - 1);
+        cache.awaitWrites();
+
+        assertThat(cache.contains("first"), is(true));
+        assertThat(cache.contains("second"), is(false));
+        assertThat(cache.contains("third"), is(true));
+    }
+
+    public void testEvictionIsRestoredFromJournal() {
+        DiskLruCache cache = openCache();
+        cache.put("first", createBitmap());
+        cache.put("second", createBitmap());
+        cache.awaitWrites();
+        cache.setMaxSizeBytes(cache.getSizeBytes() - 1);
+        cache.awaitWrites();
+
+        DiskLruCache restored = openCache();
+
+        assertThat(restored.get("first"), is(nullValue()));
+        assertThat(restored.get("second"), is(notNullValue()));
+        assertThat(restored.getSizeBytes(), is(cache.getSizeBytes()));
+    }
+
+    public void testFilesOfInterruptedWriteAreRemoved() throws IOException {
+        DiskLruCache cache = openCache();
+        cache.put("key", createBitmap());
+        cache.awaitWrites();
+        String fileName = DiskLruCache.makeFileName("interrupted");
+        File partial = new File(mDirectory, fileName + ".tmp");
+        File renamed = new File(mDirectory, fileName);
+        createFile(partial);
+        createFile(renamed);
+        FileWriter journalWriter = new FileWriter(new File(mDirectory, "journal"), true);
+        journalWriter.write("DIRTY " + fileName + '\n');
+        journalWriter.close();
+
+        DiskLruCache restored = openCache();
+
+        assertThat(partial.exists(), is(false));
+        assertThat(renamed.exists(), is(false));
+        assertThat(restored.contains("interrupted"), is(false));
+        assertThat(restored.get("key"), is(notNullValue()));
+    }
+
+    public void testCompletedWriteIsKept() {
+        DiskLruCache cache = openCache();
+        cache.put("key", createBitmap());
+        cache.awaitWrites();
+
+        DiskLruCache restored = openCache();
+
+        assertThat(new File(mDirectory, DiskLruCache.makeFileName("key")).exists(), is(true));
+        assertThat(restored.getSizeBytes(), is(cache.getSizeBytes()));
+    }
+
+    public void testEntryWithMissingFileIsForgottenOnRead() {
+        DiskLruCache cache = openCache();
+        cache.put("key", createBitmap());
+        cache.awaitWrites();
+        assertThat(new File(mDirectory, DiskLruCache.makeFileName("key")).delete(), is(true));
+
+        DiskLruCache restored = openCache();
+
+        assertThat(restored.get("key"), is(nullValue()));
+        restored.awaitWrites();
+        assertThat(restored.contains("key"), is(false));
+        assertThat(restored.getSizeBytes(), is(0L));
+    }
+
+    public void testCorruptJournalClearsCache() throws IOException {
+        File stale = new File(mDirectory, DiskLruCache.makeFileName("key"));
+        createFile(stale);
+        createFile(new File(mDirectory, "journal"));
+
+        DiskLruCache cache = openCache();
+
+        assertThat(stale.exists(), is(false));
+        assertThat(cache.get("key"), is(nullValue()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.IsEqual.*;
+
+/**
+ * Compares the {@link PixelEngine} to the per-pixel getPixel/setPixel loops it replaced.
+ * The timings are written to the log with tag {@value #TAG}.
+ */
+@SuppressWarnings("MagicNumber")
+public class PixelEngineBenchmarkTest extends AndroidTestCase {
+
+    private static final String TAG = "PixelEngineBenchmark";
+
+    private static final int SIZE = 512;
+
+    private static final int RUNS = 3;
+
+    public void testConvertImageColor() {
+        Bitmap legacy = createTestBitmap();
+        Bitmap engine = createTestBitmap();
+
+        long legacyNs = Long.MAX_VALUE;
+        long engineNs = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            legacyConvertImageColor(legacy, Color.BLUE);
+            legacyNs = Math.min(legacyNs, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            PixelEngine.convertImageColor(engine, Color.BLUE);
+            engineNs = Math.min(engineNs, System.nanoTime() - start);
+        }
+
+        logResult("convertImageColor", legacyNs, engineNs);
+        assertThat(engine.sameAs(legacy), equalTo(true));
+    }
+
+    public void testInvertImage() {
+        Bitmap legacy = createTestBitmap();
+        Bitmap engine = createTestBitmap();
+
+        long legacyNs = Long.MAX_VALUE;
+        long engineNs = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            legacyInvertImage(legacy, Color.BLUE);
+            legacyNs = Math.min(legacyNs, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            PixelEngine.invertImage(engine, Color.BLUE);
+            engineNs = Math.min(engineNs, System.nanoTime() - start);
+        }
+
+        logResult("invertImage", legacyNs, engineNs);
+        assertThat(engine.sameAs(legacy), equalTo(true));
+    }
+
+    /**
+     * Creates a bitmap whose left half is red, and whose right half is transparent.
+     */
+    private static Bitmap createTestBitmap() {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        int[] pixels = new int[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE / 2; x++) {
+                pixels[y * SIZE + x] = Color.RED;
+            }
+        }
+        bitmap.setPixels(pixels, 0, SIZE, 0, 0, SIZE, SIZE);
+        return bitmap;
+    }
+
+    private static void logResult(final String name, final long legacyNs, final long engineNs) {
+        Log.i(TAG, String.format("%s %dx%d: legacy %.2fms, engine %.2fms, speedup %.1fx",
+                name, SIZE, SIZE, legacyNs / 1.0e6, engineNs / 1.0e6, (double) legacyNs / engineNs));
+    }
+
+    private static void legacyConvertImageColor(final Bitmap image, final int invertColor) {
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                if (image.getPixel(x, y) != Color.TRANSPARENT) {
+                    image.setPixel(x, y, invertColor);
+                }
+            }
+        }
+    }
+
+    private static void legacyInvertImage(final Bitmap image, final int invertColor) {
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                if (image.getPixel(x, y) == Color.TRANSPARENT) {
+                    image.setPixel(x, y, invertColor);
+                } else {
+                    image.setPixel(x, y, Color.TRANSPARENT);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.label305.stan.svg;
+
+import android.test.AndroidTestCase;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.Is.*;
+
+@SuppressWarnings("MagicNumber")
+public class SizeBucketPolicyTest extends AndroidTestCase {
+
+    public void testNearbySizesShareASqrt2Bucket() {
+        SizeBucketPolicy policy = SizeBucketPolicy.POWERS_OF_SQRT_2;
+
+        assertThat(policy.getBucketSize(47), is(64));
+        assertThat(policy.getBucketSize(48), is(64));
+        assertThat(policy.getBucketSize(64), is(64));
+        assertThat(policy.getBucketSize(65), is(91));
+    }
+
+    public void testStepsRoundUp() {
+        SizeBucketPolicy policy = SizeBucketPolicy.steps(8);
+
+        assertThat(policy.getBucketSize(1), is(8));
+        assertThat(policy.getBucketSize(8), is(8));
+        assertThat(policy.getBucketSize(9), is(16));
+    }
+}
@@ -0,0 +1,41 @@
+package com.label305.stan.svg;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.Is.*;
+
+@SuppressWarnings("MagicNumber")
+public class StatsRecorderTest extends AndroidTestCase {
+
+    public void testLookupsAreCounted() {
+        StatsRecorder recorder = new StatsRecorder();
+
+        recorder.recordMemoryLookup(new Object());
+        recorder.recordMemoryLookup(null);
+        recorder.recordMemoryLookup(null);
+        recorder.recordDiskLookup(new Object());
+
+        CacheStats stats = recorder.snapshot(0);
+        assertThat(stats.getMemoryHitCount(), is(1L));
+        assertThat(stats.getMemoryMissCount(), is(2L));
+        assertThat(stats.getDiskHitRate(), is(1.0));
+    }
+
+    public void testLoadTimesAreBucketed() {
+        StatsRecorder recorder = new StatsRecorder();
+
+        recorder.recordLoadTime(CacheStats.LoadType.SVG_PARSE, TimeUnit.MICROSECONDS.toNanos(1));
+        recorder.recordLoadTime(CacheStats.LoadType.SVG_PARSE, TimeUnit.MICROSECONDS.toNanos(3));
+        recorder.recordLoadTime(CacheStats.LoadType.SVG_PARSE, TimeUnit.MILLISECONDS.toNanos(5));
+
+        LoadTimeHistogram histogram = recorder.snapshot(0).getLoadTimes(CacheStats.LoadType.SVG_PARSE);
+        assertThat(histogram.getCount(), is(3L));
+        assertThat(histogram.getCountInBucket(0), is(1L));
+        assertThat(histogram.getCountInBucket(1), is(1L));
+        assertThat(histogram.getPercentileNanos(0.5), is(TimeUnit.MICROSECONDS.toNanos(4)));
+        assertThat(histogram.getPercentileNanos(1), is(TimeUnit.MICROSECONDS.toNanos(8192)));
+    }
+}
@@ -0,0 +1,47 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNot.*;
+import static org.hamcrest.core.IsSame.*;
+
+@SuppressWarnings("MagicNumber")
+public class SvgBitmapKeyTest extends AndroidTestCase {
+
+    public void testEqualPropertiesMakeEqualKeys() {
+        SvgBitmapKey key = new SvgBitmapKey(10, 5, 3, 0xFF00FF00, SvgBitmapKey.FLAG_CUSTOM_COLOR);
+        SvgBitmapKey other = new SvgBitmapKey(10, 5, 3, 0xFF00FF00, SvgBitmapKey.FLAG_CUSTOM_COLOR);
+
+        assertThat(key, equalTo(other));
+        assertThat(key.hashCode(), equalTo(other.hashCode()));
+    }
+
+    /**
+     * The string tags of earlier versions added the resource id to the width, so these two shared a cache entry.
+     */
+    public void testResourceIdAndWidthDoNotCollide() {
+        SvgBitmapKey key = new SvgBitmapKey(10, 5, 3, 0, 0);
+        SvgBitmapKey swapped = new SvgBitmapKey(5, 10, 3, 0, 0);
+
+        assertThat(key, not(equalTo(swapped)));
+    }
+
+    public void testResourceIdAndWidthDoNotShareCachedBitmap() {
+        BitmapCache cache = BitmapCache.getInstance(getContext());
+        SvgBitmapKey key = new SvgBitmapKey(10, 5, 7919, 0, 0);
+        SvgBitmapKey swapped = new SvgBitmapKey(5, 10, 7919, 0, 0);
+        Bitmap bitmap = Bitmap.createBitmap(5, 3, Bitmap.Config.ARGB_8888);
+        Bitmap swappedBitmap = Bitmap.createBitmap(10, 3, Bitmap.Config.ARGB_8888);
+
+        cache.addBitmapToCache(key, bitmap, 0);
+        cache.addBitmapToCache(swapped, swappedBitmap, 0);
+
+        assertThat(cache.acquireBitmapFromMemoryCache(key), sameInstance(bitmap));
+        assertThat(cache.acquireBitmapFromMemoryCache(swapped), sameInstance(swappedBitmap));
+        BitmapPool.getInstance().release(bitmap);
+        BitmapPool.getInstance().release(swappedBitmap);
+    }
+}
@@ -22,19 +22,30 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.PictureDrawable;
 import android.graphics.drawable.StateListDrawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.test.AndroidTestCase;
 import android.view.LayoutInflater;
+import android.view.View;
 import android.widget.LinearLayout;
 
+import java.util.concurrent.CountDownLatch;
+
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.core.IsEqual.*;
 import static org.hamcrest.core.IsNot.*;
+import static org.hamcrest.core.IsSame.*;
 
 public class SvgImageViewTest extends AndroidTestCase {
 
+    private static final long ASYNC_TIMEOUT_MS = 5000;
+
     private SvgImageView mSvgImageView;
 
 
@@ -54,11 +65,22 @@ public class SvgImageViewTest extends AndroidTestCase {
         return bitmap;
     }
 
+    //Draw any other Drawable to a Bitmap
+    private Bitmap drawable2Bitmap(final Drawable drawable) {
+        Bitmap bitmap = Bitmap.createBitmap(mSvgImageView.getWidth(), mSvgImageView.getHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
     private Bitmap getBitmapFromDrawable(final Drawable drawable) {
         if (drawable instanceof BitmapDrawable) {
             return ((BitmapDrawable) drawable).getBitmap();
-        } else {
+        } else if (drawable instanceof PictureDrawable) {
             return pictureDrawable2Bitmap((PictureDrawable) drawable);
+        } else {
+            return drawable2Bitmap(drawable);
         }
     }
 
@@ -318,4 +340,120 @@ public class SvgImageViewTest extends AndroidTestCase {
         assertThat(rightPixel, not(equalTo(Color.RED)));
         assertThat(rightPixel, not(equalTo(Color.WHITE)));
     }
+
+    public void testDrawTimeTintedSVGImageView() {
+        mSvgImageView.setTintAtDrawTime(true);
+        mSvgImageView.setSvgColor(Color.BLUE);
+        mSvgImageView.setPressedSvgColor(Color.GREEN);
+
+        Bitmap bmp = getBitmapFromImageView();
+
+        int leftPixel = bmp.getPixel(0, 0);
+        int rightPixel = bmp.getPixel(mSvgImageView.getDrawable().getIntrinsicWidth() - 1, 0);
+
+        assertThat(leftPixel, equalTo(Color.BLUE));
+        assertThat(rightPixel, equalTo(Color.TRANSPARENT));
+
+        mSvgImageView.setPressed(true);
+
+        bmp = getBitmapFromImageView();
+
+        leftPixel = bmp.getPixel(0, 0);
+        rightPixel = bmp.getPixel(mSvgImageView.getDrawable().getIntrinsicWidth() - 1, 0);
+
+        assertThat(leftPixel, equalTo(Color.GREEN));
+        assertThat(rightPixel, equalTo(Color.TRANSPARENT));
+    }
+
+    public void testDrawTimeTintedSVGImageViewsShareMask() {
+        mSvgImageView.setTintAtDrawTime(true);
+        mSvgImageView.setSvgColor(Color.BLUE);
+        Bitmap blueMask = ((TintedBitmapDrawable) mSvgImageView.getDrawable()).getMask();
+
+        mSvgImageView.setSvgColor(Color.GREEN);
+        Bitmap greenMask = ((TintedBitmapDrawable) mSvgImageView.getDrawable()).getMask();
+
+        assertThat(greenMask, sameInstance(blueMask));
+    }
+
+    public void testDrawTimeTintedSVGImageViewUsesAlphaMask() {
+        mSvgImageView.setTintAtDrawTime(true);
+        mSvgImageView.setSvgColor(Color.BLUE);
+        Bitmap mask = ((TintedBitmapDrawable) mSvgImageView.getDrawable()).getMask();
+
+        assertThat(mask.getConfig(), equalTo(Bitmap.Config.ALPHA_8));
+    }
+
+    public void testPropertyChangesAreRenderedOnce() {
+        /* A color no other test renders, so the image is not in the memory cache yet */
+        int color = Color.rgb(17, 91, 203);
+        long renderCount = getRenderCount();
+
+        mSvgImageView.setSvgColor(Color.MAGENTA);
+        mSvgImageView.doInvertSvg();
+        mSvgImageView.doNotInvertSvg();
+        mSvgImageView.setSvgColor(color);
+
+        assertThat(getRenderCount(), equalTo(renderCount));
+
+        mSvgImageView.layout(0, 0, 2, 2);
+        Bitmap bmp = getBitmapFromImageView();
+
+        assertThat(getRenderCount(), equalTo(renderCount + 1));
+        assertThat(bmp.getPixel(0, 0), equalTo(color));
+    }
+
+    private long getRenderCount() {
+        return BitmapCache.getInstance(getContext()).getStats().getLoadTimes(CacheStats.LoadType.BITMAP_RENDER).getCount();
+    }
+
+    public void testSoftwareLayerIsOnlyUsedForPicturesBeforeHardwareSupport() {
+        int pictureLayerType = Build.VERSION.SDK_INT < SvgImageView.PICTURE_HARDWARE_API_LEVEL ? View.LAYER_TYPE_SOFTWARE : View.LAYER_TYPE_NONE;
+
+        assertThat(mSvgImageView.getDrawable() instanceof PictureDrawable, equalTo(true));
+        assertThat(mSvgImageView.getLayerType(), equalTo(pictureLayerType));
+
+        mSvgImageView.setSvgColor(Color.BLUE);
+        assertThat(mSvgImageView.getDrawable() instanceof PictureDrawable, equalTo(false));
+        assertThat(mSvgImageView.getLayerType(), equalTo(View.LAYER_TYPE_NONE));
+
+        mSvgImageView.setSvgResource(0);
+        mSvgImageView.getDrawable();
+        assertThat(mSvgImageView.getLayerType(), equalTo(View.LAYER_TYPE_NONE));
+    }
+
+    public void testAsyncRenderingShowsRenderedImage() throws InterruptedException {
+        Drawable placeholder = new ColorDrawable(Color.GRAY);
+        mSvgImageView.setPlaceholder(placeholder);
+        mSvgImageView.setAsyncRendering(true);
+        /* A color no other test renders, so the image is not in the memory cache yet */
+        mSvgImageView.setSvgColor(Color.CYAN);
+
+        Drawable drawable = getDrawableOnMainThread();
+        long deadline = SystemClock.uptimeMillis() + ASYNC_TIMEOUT_MS;
+        while (drawable == placeholder && SystemClock.uptimeMillis() < deadline) {
+            Thread.sleep(10);
+            drawable = getDrawableOnMainThread();
+        }
+
+        assertThat(drawable, not(sameInstance(placeholder)));
+        assertThat(getBitmapFromDrawable(drawable).getPixel(0, 0), equalTo(Color.CYAN));
+    }
+
+    /**
+     * Returns the Drawable of the view on the main thread, where the result of an async render is applied.
+     */
+    private Drawable getDrawableOnMainThread() throws InterruptedException {
+        final Drawable[] result = new Drawable[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = mSvgImageView.getDrawable();
+                latch.countDown();
+            }
+        });
+        latch.await();
+        return result[0];
+    }
 }
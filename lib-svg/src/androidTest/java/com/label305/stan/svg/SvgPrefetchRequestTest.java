@@ -0,0 +1,68 @@
+package com.label305.stan.svg;
+
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+import android.view.LayoutInflater;
+import android.widget.LinearLayout;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.IsEqual.*;
+
+@SuppressWarnings("MagicNumber")
+public class SvgPrefetchRequestTest extends AndroidTestCase {
+
+    private SvgImageView mSvgImageView;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        LinearLayout layout = (LinearLayout) LayoutInflater.from(getContext()).inflate(R.layout.svg_simple_layout, null);
+        mSvgImageView = (SvgImageView) layout.findViewById(R.id.svg);
+    }
+
+    private SvgRenderSpec getViewSpec() {
+        mSvgImageView.layout(0, 0, 2, 2);
+        mSvgImageView.getDrawable();
+        return mSvgImageView.getRequestedSpec();
+    }
+
+    public void testRequestInOwnColorsMatchesView() {
+        SvgPrefetchRequest request = new SvgPrefetchRequest(R.raw.ic_svg_test_square_red, 2, 2);
+
+        assertThat(request.getSpec(), equalTo(getViewSpec()));
+    }
+
+    public void testInvertedRequestMatchesView() {
+        mSvgImageView.doInvertSvg();
+
+        SvgPrefetchRequest request = new SvgPrefetchRequest(R.raw.ic_svg_test_square_red, 2, 2, true);
+
+        assertThat(request.getSpec(), equalTo(getViewSpec()));
+    }
+
+    public void testInvertedRequestTintedAtDrawTimeMatchesView() {
+        mSvgImageView.doInvertSvg();
+        mSvgImageView.setTintAtDrawTime(true);
+
+        SvgPrefetchRequest request = new SvgPrefetchRequest(R.raw.ic_svg_test_square_red, 2, 2, true, true);
+
+        assertThat(request.getSpec(), equalTo(getViewSpec()));
+    }
+
+    public void testColoredRequestMatchesView() {
+        mSvgImageView.setSvgColor(Color.BLUE);
+
+        SvgPrefetchRequest request = new SvgPrefetchRequest(R.raw.ic_svg_test_square_red, 2, 2, Color.BLUE, false);
+
+        assertThat(request.getSpec(), equalTo(getViewSpec()));
+    }
+
+    public void testColoredInvertedRequestMatchesView() {
+        mSvgImageView.setSvgColor(Color.BLUE);
+        mSvgImageView.doInvertSvg();
+
+        SvgPrefetchRequest request = new SvgPrefetchRequest(R.raw.ic_svg_test_square_red, 2, 2, Color.BLUE, true);
+
+        assertThat(request.getSpec(), equalTo(getViewSpec()));
+    }
+}
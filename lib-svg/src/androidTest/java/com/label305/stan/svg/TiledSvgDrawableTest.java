@@ -0,0 +1,152 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.Is.*;
+
+@SuppressWarnings({"MagicNumber", "AnonymousInnerClass"})
+public class TiledSvgDrawableTest extends AndroidTestCase {
+
+    /**
+     * Three by three tiles, the last row and column being partial.
+     */
+    private static final int SIZE = TiledSvgDrawable.TILE_SIZE * 2 + 88;
+
+    private TiledSvgDrawable mDrawable;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDrawable = new TiledSvgDrawable(new EmptySvg(), SIZE, SIZE, 0, false, false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mDrawable.release();
+            }
+        });
+        super.tearDown();
+    }
+
+    /**
+     * Draws the drawable within given bounds onto a canvas clipped to given rectangle, on the main thread.
+     */
+    private void draw(final int boundsSize, final int clipLeft, final int clipTop, final int clipRight, final int clipBottom) throws InterruptedException {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                Canvas canvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+                canvas.clipRect(clipLeft, clipTop, clipRight, clipBottom);
+                mDrawable.setBounds(0, 0, boundsSize, boundsSize);
+                mDrawable.draw(canvas);
+            }
+        });
+    }
+
+    private boolean[][] getRequestedTiles() throws InterruptedException {
+        final boolean[][] result = new boolean[3][3];
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                for (int row = 0; row < 3; row++) {
+                    for (int column = 0; column < 3; column++) {
+                        result[row][column] = mDrawable.isTileRequested(column, row);
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    private static void runOnMainThread(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                latch.countDown();
+            }
+        });
+        latch.await();
+    }
+
+    public void testOnlyTileInClipIsScheduled() throws InterruptedException {
+        draw(SIZE, 10, 10, 100, 100);
+
+        assertThat(getRequestedTiles(), is(new boolean[][]{
+                {true, false, false},
+                {false, false, false},
+                {false, false, false}
+        }));
+    }
+
+    public void testTilesOverlappingClipAreScheduled() throws InterruptedException {
+        draw(SIZE, 300, 200, SIZE, 300);
+
+        assertThat(getRequestedTiles(), is(new boolean[][]{
+                {false, true, true},
+                {false, true, true},
+                {false, false, false}
+        }));
+    }
+
+    public void testClipIsMappedThroughBounds() throws InterruptedException {
+        /* At half size, the clip covers the first two tiles in both directions */
+        draw(SIZE / 2, 0, 0, 150, 150);
+
+        assertThat(getRequestedTiles(), is(new boolean[][]{
+                {true, true, false},
+                {true, true, false},
+                {false, false, false}
+        }));
+    }
+
+    public void testReleaseCancelsScheduledTiles() throws InterruptedException {
+        draw(SIZE, 0, 0, SIZE, SIZE);
+
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mDrawable.release();
+            }
+        });
+
+        assertThat(getRequestedTiles(), is(new boolean[3][3]));
+    }
+
+    private static class EmptySvg implements RenderableSvg {
+
+        @Override
+        public void renderToCanvas(@NotNull final Canvas canvas) {
+        }
+
+        @Override
+        public void renderToCanvas(@NotNull final Canvas canvas, final int viewportWidth, final int viewportHeight) {
+        }
+
+        @NotNull
+        @Override
+        public Picture renderToPicture() {
+            return new Picture();
+        }
+
+        @NotNull
+        @Override
+        public Picture renderToPicture(final int width, final int height) {
+            return new Picture();
+        }
+    }
+}
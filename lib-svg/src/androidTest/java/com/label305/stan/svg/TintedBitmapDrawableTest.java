@@ -0,0 +1,81 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.test.AndroidTestCase;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsSame.*;
+
+@SuppressWarnings("MagicNumber")
+public class TintedBitmapDrawableTest extends AndroidTestCase {
+
+    private static final int[] PRESSED_STATE = {android.R.attr.state_pressed};
+
+    private static final int[] DEFAULT_STATE = {};
+
+    private static TintedBitmapDrawable createDrawable() {
+        Bitmap mask = Bitmap.createBitmap(4, 4, Bitmap.Config.ALPHA_8);
+        mask.eraseColor(Color.BLACK);
+        TintedBitmapDrawable drawable = new TintedBitmapDrawable(mask, Color.BLUE, Color.GREEN, true);
+        drawable.setBounds(0, 0, 4, 4);
+        return drawable;
+    }
+
+    private static int drawCenterPixel(final TintedBitmapDrawable drawable) {
+        Bitmap bitmap = Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap.getPixel(2, 2);
+    }
+
+    public void testMaskIsTinted() {
+        assertThat(drawCenterPixel(createDrawable()), is(Color.BLUE));
+    }
+
+    public void testColorFiltersAreSharedBetweenDrawablesOfTheSameColors() {
+        TintedBitmapDrawable first = createDrawable();
+        TintedBitmapDrawable second = createDrawable();
+
+        assertThat(second.getTintColorFilter(), is(sameInstance(first.getTintColorFilter())));
+
+        first.setState(PRESSED_STATE);
+        second.setState(PRESSED_STATE);
+
+        assertThat(second.getTintColorFilter(), is(sameInstance(first.getTintColorFilter())));
+    }
+
+    public void testPressedColorIsUsedWhilePressed() {
+        TintedBitmapDrawable drawable = createDrawable();
+
+        drawable.setState(PRESSED_STATE);
+        assertThat(drawCenterPixel(drawable), is(Color.GREEN));
+
+        drawable.setState(DEFAULT_STATE);
+        assertThat(drawCenterPixel(drawable), is(Color.BLUE));
+    }
+
+    public void testColorFilterOfTheAppIsKeptWhenPressed() {
+        TintedBitmapDrawable drawable = createDrawable();
+        drawable.setColorFilter(new PorterDuffColorFilter(Color.RED, PorterDuff.Mode.SRC_IN));
+
+        drawable.setState(PRESSED_STATE);
+        assertThat(drawCenterPixel(drawable), is(Color.RED));
+
+        drawable.setState(DEFAULT_STATE);
+        assertThat(drawCenterPixel(drawable), is(Color.RED));
+    }
+
+    public void testClearingColorFilterRestoresTint() {
+        TintedBitmapDrawable drawable = createDrawable();
+        drawable.setColorFilter(new PorterDuffColorFilter(Color.RED, PorterDuff.Mode.SRC_IN));
+        drawable.setState(PRESSED_STATE);
+
+        drawable.setColorFilter(null);
+
+        assertThat(drawCenterPixel(drawable), is(Color.GREEN));
+    }
+}
@@ -2,49 +2,58 @@ package com.label305.stan.svg;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.support.v4.util.LruCache;
+import android.os.Looper;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.regex.Pattern;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Util for caching bitmaps.
+ * Util for caching bitmaps, in memory and on disk.
+ * The disk cache is only read on background threads; a miss on the main thread loads the bitmap from disk into memory in the background.
+ * The memory cache shares its budget with the other caches of lib-svg, and counts the bytes allocated for each bitmap.
  */
 public class BitmapCache {
 
-    private static final Pattern SLASH_PATTERN = Pattern.compile("/");
+    private static final String DISK_CACHE_DIR = "stan-bitmaps";
 
-    private static final Pattern DOT_PATTERN = Pattern.compile("\\.");
+    private static final long DEFAULT_DISK_CACHE_SIZE_BYTES = 20 * 1024 * 1024;
 
     @Nullable
     private static BitmapCache sInstance;
 
     @Nullable
-    private final File mCacheDir;
+    private final DiskLruCache mDiskCache;
 
     @NotNull
-    private final LruCache<String, Bitmap> mCache;
+    private final StatsRecorder mStatsRecorder = new StatsRecorder();
 
-    private boolean mIsDiskWritable;
+    @NotNull
+    private final BudgetedCache<Object, Bitmap> mCache = new MyCache(mStatsRecorder);
+
+    @NotNull
+    private final ExecutorService mDiskReadExecutor = Executors.newSingleThreadExecutor();
 
-    private boolean mIsDiskReadable;
+    /**
+     * The keys of the bitmaps being loaded from disk in the background.
+     */
+    @NotNull
+    private final Set<String> mPendingDiskReads = new HashSet<>();
 
     private BitmapCache(@NotNull final Context context) {
-        mCacheDir = context.getExternalCacheDir();
-        if (mCacheDir != null) {
-            mIsDiskWritable = mCacheDir.canWrite();
-            mIsDiskReadable = mCacheDir.canRead();
+        File cacheDir = context.getExternalCacheDir();
+        if (cacheDir != null && cacheDir.canWrite() && cacheDir.canRead()) {
+            mDiskCache = new DiskLruCache(new File(cacheDir, DISK_CACHE_DIR), DEFAULT_DISK_CACHE_SIZE_BYTES, mStatsRecorder);
+        } else {
+            mDiskCache = null;
         }
 
-        final int maxMemory = (int) (Runtime.getRuntime().maxMemory() / 1024);
-        final int cacheSize = maxMemory / 8;
-        mCache = new MyCache(cacheSize);
+        MemoryTrimmer.getInstance().register(context);
     }
 
     @NotNull
@@ -57,30 +66,75 @@ public class BitmapCache {
         }
     }
 
+    /**
+     * Sets the maximum number of bytes the disk cache may use. Least recently used bitmaps are removed when it grows larger.
+     * Defaults to 20MB.
+     */
+    public void setDiskCacheMaxSize(final long maxSizeBytes) {
+        if (mDiskCache != null) {
+            mDiskCache.setMaxSizeBytes(maxSizeBytes);
+        }
+    }
+
+    /**
+     * Sets how bitmaps written to the disk cache from now on are stored. Defaults to {@link DiskCodecPolicy#BALANCED}.
+     */
+    public void setDiskCodecPolicy(@NotNull final DiskCodecPolicy codecPolicy) {
+        if (mDiskCache != null) {
+            mDiskCache.setCodecPolicy(codecPolicy);
+        }
+    }
+
+    /**
+     * Returns the bitmap for given key from the memory cache, or from the disk cache when called on a background thread.
+     * When called on the main thread, a bitmap in the disk cache is loaded into the memory cache in the background,
+     * and null is returned.
+     */
     @Nullable
     public Bitmap getBitmapFromCache(@NotNull final String key) {
-        Bitmap result = mCache.get(key);
+        return getFromCache(key);
+    }
 
-        if (result == null && mIsDiskReadable) {
-            result = getBitmapFromDiskCache(key);
-            if (result != null && !result.isRecycled()) {
-                addBitmapToCache(key, result);
-            }
-        }
-        return result;
+    /**
+     * Returns the bitmap for given key if it is in the memory cache, without touching the disk cache.
+     */
+    @Nullable
+    public Bitmap getBitmapFromMemoryCache(@NotNull final String key) {
+        return getFromMemoryCache(key);
     }
 
+    /**
+     * Returns the bitmap for given key if it is in the memory cache, acquired from the {@link BitmapPool}.
+     * The bitmap is acquired while the memory cache still holds it, so it can't be evicted and reused in between.
+     * Rendered Svg bitmaps are never written to the disk cache, so it is not looked up.
+     */
+    @Nullable
+    Bitmap acquireBitmapFromMemoryCache(@NotNull final SvgBitmapKey key) {
+        return acquireFromMemoryCache(key);
+    }
+
+    /**
+     * Adds given bitmap to the memory cache, unless it holds a bitmap for given key already. Does not touch the disk cache.
+     */
     public void addBitmapToCache(@NotNull final String key, final Bitmap bitmap) {
-        if (getBitmapFromCache(key) == null) {
-            mCache.put(key, bitmap);
-        }
+        addToCache(key, bitmap, MemoryBudget.DEFAULT_COST_NANOS);
     }
 
+    /**
+     * @param costNanos the time it took to render the bitmap.
+     */
+    void addBitmapToCache(@NotNull final SvgBitmapKey key, @NotNull final Bitmap bitmap, final long costNanos) {
+        mStatsRecorder.recordLoadTime(CacheStats.LoadType.BITMAP_RENDER, costNanos);
+        addToCache(key, bitmap, costNanos);
+    }
+
+    /**
+     * Schedules given bitmap to be written to the disk cache, if it is not in there yet.
+     * The bitmap should not be modified or recycled afterwards.
+     */
     public void addBitmapToDiskCache(@NotNull final String key, @NotNull final Bitmap bitmap) {
-        if (mIsDiskWritable && getBitmapFromDiskCache(key) == null) {
-            Runnable addToDiskCacheRunnable = new AddToDiskCacheRunnable(key, bitmap);
-            Thread addToDiskCacheThread = new Thread(addToDiskCacheRunnable);
-            addToDiskCacheThread.start();
+        if (mDiskCache != null && !mDiskCache.contains(key)) {
+            mDiskCache.put(key, bitmap);
         }
     }
 
@@ -94,57 +148,136 @@ public class BitmapCache {
         addBitmapToDiskCache(key, bitmap);
     }
 
+    /**
+     * Returns a snapshot of the statistics of the memory and disk caches.
+     * The load times of {@link CacheStats.LoadType#BITMAP_RENDER} are those of rendered Svgs.
+     */
+    @NotNull
+    public CacheStats getStats() {
+        return mStatsRecorder.snapshot(mDiskCache == null ? 0 : mDiskCache.getSizeBytes());
+    }
+
     @Nullable
-    private Bitmap getBitmapFromDiskCache(@NotNull final CharSequence key) {
-        if (mIsDiskReadable) {
-            File file = new File(mCacheDir, makeFileName(key));
+    private Bitmap getFromCache(@NotNull final String key) {
+        Bitmap result = getFromMemoryCache(key);
+        if (result == null) {
+            result = getFromDiskCache(key);
+        }
+        return result;
+    }
 
-            if (file.exists()) {
-                return BitmapFactory.decodeFile(file.getAbsolutePath());
-            }
+    @Nullable
+    private Bitmap getFromMemoryCache(@NotNull final Object key) {
+        Bitmap result = mCache.get(key);
+        mStatsRecorder.recordMemoryLookup(result);
+        return result;
+    }
+
+    @Nullable
+    private Bitmap acquireFromMemoryCache(@NotNull final Object key) {
+        Bitmap result = mCache.acquire(key);
+        mStatsRecorder.recordMemoryLookup(result);
+        return result;
+    }
+
+    /**
+     * Returns the bitmap for given key from the disk cache and adds it to the memory cache, when called on a background thread.
+     * When called on the main thread, the bitmap is loaded in the background, and null is returned.
+     */
+    @Nullable
+    private Bitmap getFromDiskCache(@NotNull final String key) {
+        if (mDiskCache == null) {
+            return null;
+        }
+        if (!mDiskCache.contains(key)) {
+            mStatsRecorder.recordDiskLookup(null);
+            return null;
+        }
+
+        Bitmap result = null;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            loadFromDiskCacheAsync(key);
+        } else {
+            result = readFromDiskCache(key);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the bitmap for given key from the disk cache, and adds it to the memory cache.
+     */
+    @Nullable
+    private Bitmap readFromDiskCache(@NotNull final String key) {
+        long startNanos = System.nanoTime();
+        Bitmap result = mDiskCache == null ? null : mDiskCache.get(key);
+        mStatsRecorder.recordDiskLookup(result);
+        if (result != null) {
+            long costNanos = System.nanoTime() - startNanos;
+            mStatsRecorder.recordLoadTime(CacheStats.LoadType.DISK_READ, costNanos);
+            putInMemoryCache(key, result, costNanos);
         }
-        return null;
+        return result;
     }
 
-    private static String makeFileName(@NotNull final CharSequence key) {
-        return DOT_PATTERN.matcher(SLASH_PATTERN.matcher(key).replaceAll("_")).replaceAll("_");
+    /**
+     * Adds given bitmap to the memory cache, unless it holds a bitmap for given key already. Never touches the disk cache.
+     */
+    private void addToCache(@NotNull final Object key, @NotNull final Bitmap bitmap, final long costNanos) {
+        if (mCache.get(key) == null) {
+            putInMemoryCache(key, bitmap, costNanos);
+        }
     }
 
-    private static class MyCache extends LruCache<String, Bitmap> {
+    private void putInMemoryCache(@NotNull final Object key, @NotNull final Bitmap bitmap, final long costNanos) {
+        BitmapPool.getInstance().acquire(bitmap);
+        mCache.put(key, bitmap, BitmapPool.getSizeBytes(bitmap), costNanos);
+    }
 
-        private MyCache(final int cacheSize) {
-            super(cacheSize);
+    private void loadFromDiskCacheAsync(@NotNull final String key) {
+        synchronized (mPendingDiskReads) {
+            if (!mPendingDiskReads.add(key)) {
+                return;
+            }
+        }
+        mDiskReadExecutor.execute(new LoadFromDiskCacheRunnable(key));
+    }
+
+    private static class MyCache extends BudgetedCache<Object, Bitmap> {
+
+        private MyCache(@NotNull final StatsRecorder statsRecorder) {
+            super(MemoryBudget.getInstance(), statsRecorder);
+        }
+
+        @Override
+        protected void entryAcquired(@NotNull final Object key, @NotNull final Bitmap value) {
+            BitmapPool.getInstance().acquire(value);
         }
 
         @Override
-        protected int sizeOf(final String key, @NotNull final Bitmap value) {
-            return value.getRowBytes() * value.getHeight() / 1024;
+        protected void entryRemoved(@NotNull final Object key, @NotNull final Bitmap value) {
+            BitmapPool.getInstance().release(value);
         }
     }
 
-    private class AddToDiskCacheRunnable implements Runnable {
+    private class LoadFromDiskCacheRunnable implements Runnable {
 
+        @NotNull
         private final String mKey;
 
-        private final Bitmap mBitmap;
-
-        private AddToDiskCacheRunnable(final String key, final Bitmap bitmap) {
+        private LoadFromDiskCacheRunnable(@NotNull final String key) {
             mKey = key;
-            mBitmap = bitmap;
         }
 
         @Override
         public void run() {
             try {
-                File file = new File(mCacheDir, makeFileName(mKey));
-                FileOutputStream fOut = new FileOutputStream(file);
-
-                mBitmap.compress(Bitmap.CompressFormat.PNG, 0, fOut);
-
-                fOut.flush();
-                fOut.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+                if (mCache.get(mKey) == null) {
+                    readFromDiskCache(mKey);
+                }
+            } finally {
+                synchronized (mPendingDiskReads) {
+                    mPendingDiskReads.remove(mKey);
+                }
             }
         }
     }
@@ -0,0 +1,35 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes bitmaps to, and reads bitmaps from, files in the disk cache.
+ */
+interface BitmapCodec {
+
+    /**
+     * Returns the identifier under which entries written by this codec are recorded in the disk cache journal.
+     * Must not contain whitespace.
+     */
+    @NotNull
+    String getId();
+
+    /**
+     * Returns whether this codec can write given bitmap.
+     */
+    boolean canEncode(@NotNull Bitmap bitmap);
+
+    void encode(@NotNull Bitmap bitmap, @NotNull File file) throws IOException;
+
+    /**
+     * @return the bitmap, or null if the file could not be decoded.
+     */
+    @Nullable
+    Bitmap decode(@NotNull File file) throws IOException;
+}
@@ -0,0 +1,228 @@
+package com.label305.stan.svg;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A pool of mutable bitmaps which are no longer used, bucketed by size and config, from which new bitmaps are taken.
+ * <p/>
+ * Users of a bitmap, such as the memory cache and the views showing it, {@link #acquire(Bitmap)} it while they use it,
+ * and {@link #release(Bitmap)} it when they are done. A bitmap enters the pool when its last user releases it,
+ * so a bitmap that is still in use is never reused.
+ * <p/>
+ * The pool has no budget of its own: it uses the room which the caches leave free in the {@link MemoryBudget}.
+ * <p/>
+ * Only bitmaps which the pool allocated itself enter the pool. Bitmaps of the app, such as those passed to {@link BitmapCache},
+ * are reference counted like any other, but never reused, since the app may still show them.
+ */
+final class BitmapPool {
+
+    @Nullable
+    private static BitmapPool sInstance;
+
+    /**
+     * The unused bitmaps by {@link #makeBucketKey(int, int, Bitmap.Config)}.
+     */
+    @NotNull
+    private final Map<Long, List<Bitmap>> mBuckets = new HashMap<>();
+
+    /**
+     * The unused bitmaps, oldest first.
+     */
+    @NotNull
+    private final ArrayDeque<Bitmap> mEvictionQueue = new ArrayDeque<>();
+
+    /**
+     * The number of users of bitmaps which are in use.
+     */
+    @NotNull
+    private final Map<Bitmap, Integer> mReferenceCounts = new WeakHashMap<>();
+
+    /**
+     * The bitmaps allocated by the pool, which may be reused once unused.
+     */
+    @NotNull
+    private final Set<Bitmap> mOwnedBitmaps = Collections.newSetFromMap(new WeakHashMap<Bitmap, Boolean>());
+
+    @NotNull
+    private final MemoryBudget mBudget;
+
+    private long mSizeBytes;
+
+    private BitmapPool(@NotNull final MemoryBudget budget) {
+        mBudget = budget;
+    }
+
+    @NotNull
+    static BitmapPool getInstance() {
+        synchronized (BitmapPool.class) {
+            if (sInstance == null) {
+                sInstance = new BitmapPool(MemoryBudget.getInstance());
+            }
+            return sInstance;
+        }
+    }
+
+    /**
+     * Returns a transparent bitmap of given size and config, taken from the pool if possible.
+     */
+    @NotNull
+    Bitmap get(final int width, final int height, @NotNull final Bitmap.Config config) {
+        Bitmap result = getUnused(width, height, config);
+        if (result == null) {
+            result = Bitmap.createBitmap(width, height, config);
+            synchronized (this) {
+                mOwnedBitmaps.add(result);
+            }
+            return result;
+        }
+
+        result.eraseColor(Color.TRANSPARENT);
+        return result;
+    }
+
+    /**
+     * Returns a bitmap of given size and config with undefined contents from the pool, or null if there is none.
+     */
+    @Nullable
+    synchronized Bitmap getUnused(final int width, final int height, @NotNull final Bitmap.Config config) {
+        List<Bitmap> bucket = mBuckets.get(makeBucketKey(width, height, config));
+        if (bucket == null || bucket.isEmpty()) {
+            return null;
+        }
+
+        Bitmap result = bucket.remove(bucket.size() - 1);
+        mEvictionQueue.removeFirstOccurrence(result);
+        mSizeBytes -= getSizeBytes(result);
+        return result;
+    }
+
+    /**
+     * Registers a user of given bitmap, which is then not reused until every user has released it.
+     */
+    synchronized void acquire(@NotNull final Bitmap bitmap) {
+        Integer count = mReferenceCounts.get(bitmap);
+        if (count == null && mEvictionQueue.removeFirstOccurrence(bitmap)) {
+            /* Taken back into use before it was reused */
+            mBuckets.get(makeBucketKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig())).remove(bitmap);
+            mSizeBytes -= getSizeBytes(bitmap);
+        }
+        mReferenceCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Unregisters a user of given bitmap. When no users are left, the bitmap is added to the pool.
+     */
+    synchronized void release(@NotNull final Bitmap bitmap) {
+        Integer count = mReferenceCounts.get(bitmap);
+        if (count == null) {
+            return;
+        }
+
+        if (count > 1) {
+            mReferenceCounts.put(bitmap, count - 1);
+        } else {
+            mReferenceCounts.remove(bitmap);
+            put(bitmap);
+        }
+    }
+
+    /**
+     * Adds given bitmap to the pool. Only for bitmaps which were never acquired, such as intermediate results.
+     */
+    synchronized void recycle(@NotNull final Bitmap bitmap) {
+        if (!mReferenceCounts.containsKey(bitmap)) {
+            put(bitmap);
+        }
+    }
+
+    /**
+     * Hands given bitmap over to the app, which may keep it for as long as it likes, so it is never added to the pool again.
+     */
+    synchronized void disown(@NotNull final Bitmap bitmap) {
+        mOwnedBitmaps.remove(bitmap);
+    }
+
+    /**
+     * Removes all unused bitmaps.
+     */
+    synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * Removes unused bitmaps until the pool fits in the room the caches leave free in the budget.
+     */
+    synchronized void trimToBudget() {
+        trimToSize(getMaxSizeBytes());
+    }
+
+    /**
+     * Returns the room the caches leave free in the budget, as far as it may currently be used.
+     * Reads the size of the budget without locking it, so the pool never waits for the caches.
+     */
+    private long getMaxSizeBytes() {
+        long budgetBytes = (long) (mBudget.getMaxSizeBytes() * MemoryTrimmer.getInstance().getSizeFraction());
+        return Math.max(0, budgetBytes - mBudget.getSizeBytes());
+    }
+
+    private void put(@NotNull final Bitmap bitmap) {
+        long maxSizeBytes = getMaxSizeBytes();
+        long sizeBytes = getSizeBytes(bitmap);
+        if (!mOwnedBitmaps.contains(bitmap) || !bitmap.isMutable() || bitmap.isRecycled() || bitmap.getConfig() == null || sizeBytes > maxSizeBytes) {
+            return;
+        }
+
+        long key = makeBucketKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        List<Bitmap> bucket = mBuckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            mBuckets.put(key, bucket);
+        }
+        bucket.add(bitmap);
+        mEvictionQueue.addLast(bitmap);
+        mSizeBytes += sizeBytes;
+        trimToSize(maxSizeBytes);
+    }
+
+    private void trimToSize(final long maxSizeBytes) {
+        while (mSizeBytes > maxSizeBytes && !mEvictionQueue.isEmpty()) {
+            Bitmap eldest = mEvictionQueue.removeFirst();
+            mBuckets.get(makeBucketKey(eldest.getWidth(), eldest.getHeight(), eldest.getConfig())).remove(eldest);
+            mSizeBytes -= getSizeBytes(eldest);
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated for the pixels of given bitmap.
+     */
+    static long getSizeBytes(@NotNull final Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return getAllocationByteCount(bitmap);
+        }
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    @TargetApi(19)
+    private static long getAllocationByteCount(@NotNull final Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    private static long makeBucketKey(final int width, final int height, @NotNull final Bitmap.Config config) {
+        return (long) width << 32 | (long) height << 8 | config.ordinal();
+    }
+}
@@ -0,0 +1,84 @@
+package com.label305.stan.svg;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of 32-bit hashes, which tells without locking that a hash was definitely not added.
+ * Hashes cannot be removed; a filter with many stale hashes should be replaced by a new one.
+ */
+final class BloomFilter {
+
+    private static final int HASH_COUNT = 3;
+
+    /**
+     * The number of bits per expected hash, for a false positive rate of about 3 percent.
+     */
+    private static final int BITS_PER_HASH = 8;
+
+    private static final int MIN_BIT_COUNT = 1 << 12;
+
+    private final AtomicLongArray mBits;
+
+    private final int mMask;
+
+    private final int mCapacity;
+
+    /**
+     * @param capacity the number of hashes the filter is sized for.
+     */
+    BloomFilter(final int capacity) {
+        int bitCount = Math.max(MIN_BIT_COUNT, Integer.highestOneBit(Math.max(1, capacity) * BITS_PER_HASH - 1) << 1);
+        mBits = new AtomicLongArray(bitCount / 64);
+        mMask = bitCount - 1;
+        mCapacity = bitCount / BITS_PER_HASH;
+    }
+
+    /**
+     * Returns the number of hashes the filter holds with its designed false positive rate.
+     */
+    int getCapacity() {
+        return mCapacity;
+    }
+
+    void add(final int hash) {
+        int h1 = mix(hash);
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mMask;
+            int index = bit >>> 6;
+            long mask = 1L << bit;
+            long value;
+            do {
+                value = mBits.get(index);
+            } while ((value & mask) == 0 && !mBits.compareAndSet(index, value, value | mask));
+        }
+    }
+
+    /**
+     * Returns false if given hash was definitely not added, or true if it may have been.
+     */
+    boolean mightContain(final int hash) {
+        int h1 = mix(hash);
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mMask;
+            if ((mBits.get(bit >>> 6) & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads the bits of given hash, as the finalizer of MurmurHash3 does.
+     */
+    private static int mix(final int hash) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,116 @@
+package com.label305.stan.svg;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memory cache whose entries count against a shared {@link MemoryBudget}, which decides which entries of all caches are evicted.
+ */
+class BudgetedCache<K, V> {
+
+    @NotNull
+    private final MemoryBudget mBudget;
+
+    /**
+     * Guarded by the lock of the budget.
+     */
+    @NotNull
+    private final Map<K, MemoryBudget.Entry<K, V>> mEntries = new HashMap<>();
+
+    @NotNull
+    private final StatsRecorder mStatsRecorder;
+
+    /**
+     * @param statsRecorder records the memory use and evictions of the cache.
+     */
+    BudgetedCache(@NotNull final MemoryBudget budget, @NotNull final StatsRecorder statsRecorder) {
+        mBudget = budget;
+        mStatsRecorder = statsRecorder;
+    }
+
+    @Nullable
+    final V get(@NotNull final K key) {
+        synchronized (mBudget) {
+            MemoryBudget.Entry<K, V> entry = mEntries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            mBudget.touch(entry);
+            return entry.mValue;
+        }
+    }
+
+    /**
+     * Returns the value for given key like {@link #get(Object)}, and calls {@link #entryAcquired(Object, Object)} for it
+     * while holding the lock of the budget, so it is not evicted in between.
+     */
+    @Nullable
+    final V acquire(@NotNull final K key) {
+        synchronized (mBudget) {
+            MemoryBudget.Entry<K, V> entry = mEntries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            mBudget.touch(entry);
+            entryAcquired(entry.mKey, entry.mValue);
+            return entry.mValue;
+        }
+    }
+
+    /**
+     * Caches given value, replacing the value cached for given key.
+     *
+     * @param sizeBytes the memory the value uses.
+     * @param costNanos the time it took to build the value, see {@link MemoryBudget#DEFAULT_COST_NANOS}.
+     */
+    final void put(@NotNull final K key, @NotNull final V value, final long sizeBytes, final long costNanos) {
+        MemoryBudget.Entry<K, V> entry = new MemoryBudget.Entry<>(this, key, value, sizeBytes, costNanos);
+        mStatsRecorder.addMemorySizeBytes(entry.mSizeBytes);
+        MemoryBudget.Entry<K, V> previous;
+        List<MemoryBudget.Entry<?, ?>> evicted;
+        synchronized (mBudget) {
+            previous = mEntries.put(key, entry);
+            if (previous != null) {
+                mBudget.remove(previous);
+            }
+            evicted = mBudget.add(entry);
+        }
+        if (previous != null) {
+            onRemoved(previous, CacheStats.EvictionReason.REPLACED);
+        }
+        MemoryBudget.notifyRemoved(evicted, CacheStats.EvictionReason.SIZE);
+        /* The pool only gets the room the caches leave free, which just shrank */
+        BitmapPool.getInstance().trimToBudget();
+    }
+
+    /**
+     * Called by {@link #acquire(Object)} while holding the lock of the budget.
+     */
+    protected void entryAcquired(@NotNull final K key, @NotNull final V value) {
+    }
+
+    /**
+     * Called when an entry is evicted or replaced, without holding any lock.
+     */
+    protected void entryRemoved(@NotNull final K key, @NotNull final V value) {
+    }
+
+    final void onRemoved(@NotNull final MemoryBudget.Entry<K, V> entry, @NotNull final CacheStats.EvictionReason reason) {
+        mStatsRecorder.addMemorySizeBytes(-entry.mSizeBytes);
+        mStatsRecorder.recordEviction(reason);
+        entryRemoved(entry.mKey, entry.mValue);
+    }
+
+    /**
+     * Called by the budget when it evicts given entry, while holding its lock.
+     */
+    final void detach(@NotNull final MemoryBudget.Entry<K, V> entry) {
+        if (mEntries.get(entry.mKey) == entry) {
+            mEntries.remove(entry.mKey);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.label305.stan.svg;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of the statistics of a cache, see {@link BitmapCache#getStats()} and {@link SvgCache#getStats()}.
+ * Counts start when the cache is created.
+ */
+public final class CacheStats {
+
+    /**
+     * Why an entry left the cache.
+     */
+    public enum EvictionReason {
+
+        /**
+         * Evicted from memory to make room for other entries.
+         */
+        SIZE,
+
+        /**
+         * Evicted from memory because the system signalled memory pressure.
+         */
+        MEMORY_PRESSURE,
+
+        /**
+         * Replaced in memory by a new entry for the same key.
+         */
+        REPLACED,
+
+        /**
+         * Removed from the disk cache to make room for other entries.
+         */
+        DISK_SIZE
+    }
+
+    /**
+     * A kind of load which fills the caches, of which the load times are recorded.
+     */
+    public enum LoadType {
+
+        SVG_PARSE,
+
+        COMPILED_SVG_LOAD,
+
+        PICTURE_RECORD,
+
+        BITMAP_RENDER,
+
+        DISK_READ,
+
+        DISK_WRITE
+    }
+
+    private final long mMemoryHitCount;
+
+    private final long mMemoryMissCount;
+
+    private final long mDiskHitCount;
+
+    private final long mDiskMissCount;
+
+    @NotNull
+    private final long[] mEvictionCounts;
+
+    private final long mMemorySizeBytes;
+
+    private final long mDiskSizeBytes;
+
+    @NotNull
+    private final LoadTimeHistogram[] mLoadTimes;
+
+    CacheStats(final long memoryHitCount, final long memoryMissCount, final long diskHitCount, final long diskMissCount, @NotNull final long[] evictionCounts,
+               final long memorySizeBytes, final long diskSizeBytes, @NotNull final LoadTimeHistogram[] loadTimes) {
+        mMemoryHitCount = memoryHitCount;
+        mMemoryMissCount = memoryMissCount;
+        mDiskHitCount = diskHitCount;
+        mDiskMissCount = diskMissCount;
+        mEvictionCounts = evictionCounts;
+        mMemorySizeBytes = memorySizeBytes;
+        mDiskSizeBytes = diskSizeBytes;
+        mLoadTimes = loadTimes;
+    }
+
+    public long getMemoryHitCount() {
+        return mMemoryHitCount;
+    }
+
+    public long getMemoryMissCount() {
+        return mMemoryMissCount;
+    }
+
+    /**
+     * Returns the fraction of memory lookups that were hits, or 0 if there were none.
+     */
+    public double getMemoryHitRate() {
+        return getRate(mMemoryHitCount, mMemoryMissCount);
+    }
+
+    public long getDiskHitCount() {
+        return mDiskHitCount;
+    }
+
+    public long getDiskMissCount() {
+        return mDiskMissCount;
+    }
+
+    /**
+     * Returns the fraction of disk lookups that were hits, or 0 if there were none.
+     */
+    public double getDiskHitRate() {
+        return getRate(mDiskHitCount, mDiskMissCount);
+    }
+
+    public long getEvictionCount(@NotNull final EvictionReason reason) {
+        return mEvictionCounts[reason.ordinal()];
+    }
+
+    /**
+     * Returns the memory the entries in the memory cache use, in bytes.
+     */
+    public long getMemorySizeBytes() {
+        return mMemorySizeBytes;
+    }
+
+    /**
+     * Returns the disk space the entries in the disk cache use, in bytes.
+     */
+    public long getDiskSizeBytes() {
+        return mDiskSizeBytes;
+    }
+
+    @NotNull
+    public LoadTimeHistogram getLoadTimes(@NotNull final LoadType loadType) {
+        return mLoadTimes[loadType.ordinal()];
+    }
+
+    private static double getRate(final long hitCount, final long missCount) {
+        long count = hitCount + missCount;
+        return count == 0 ? 0 : (double) hitCount / count;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{memoryHits=" + mMemoryHitCount + ", memoryMisses=" + mMemoryMissCount + ", diskHits=" + mDiskHitCount
+                + ", diskMisses=" + mDiskMissCount + ", evictions=" + Arrays.toString(mEvictionCounts) + ", memorySizeBytes=" + mMemorySizeBytes
+                + ", diskSizeBytes=" + mDiskSizeBytes + ", loadTimes=" + Arrays.toString(mLoadTimes) + '}';
+    }
+}
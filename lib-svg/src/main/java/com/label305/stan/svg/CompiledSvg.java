@@ -0,0 +1,372 @@
+package com.label305.stan.svg;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.RectF;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link RenderableSvg} read from the binary format written by the compileSvgs Gradle task (see compileSvg.gradle).
+ * <p/>
+ * The compiled form of a raw Svg resource is the asset svgb/&lt;resource name&gt;.svgb. It is memory-mapped when the asset is stored uncompressed.
+ * Its shapes are already flattened into paths with resolved styles and transforms, so no XML is parsed.
+ * <p/>
+ * Since assets are found by resource name only, the compiled form records the size and CRC32 of the Svg it was compiled from.
+ * It is only used when these match the resource, which differs when the resource is overridden, or has a qualified variant in use.
+ */
+final class CompiledSvg implements RenderableSvg {
+
+    private static final String ASSET_DIRECTORY = "svgb/";
+
+    private static final String ASSET_EXTENSION = ".svgb";
+
+    private static final int MAGIC = 0x53564742;
+
+    private static final int VERSION = 2;
+
+    private static final int OP_MOVE = 0;
+
+    private static final int OP_LINE = 1;
+
+    private static final int OP_CUBIC = 2;
+
+    private static final int OP_QUAD = 3;
+
+    private static final int OP_CLOSE = 4;
+
+    private static final int FLAG_FILL = 1;
+
+    private static final int FLAG_STROKE = 2;
+
+    private static final int FLAG_EVEN_ODD = 4;
+
+    private static final Paint.Cap[] CAPS = {Paint.Cap.BUTT, Paint.Cap.ROUND, Paint.Cap.SQUARE};
+
+    private static final Paint.Join[] JOINS = {Paint.Join.MITER, Paint.Join.ROUND, Paint.Join.BEVEL};
+
+    /**
+     * The document size used when the Svg does not specify one, as AndroidSVG does.
+     */
+    private static final int DEFAULT_DOCUMENT_SIZE = 512;
+
+    /**
+     * The estimated memory a shape uses besides its path data, for its Path, Matrix and Paint objects and their native counterparts.
+     */
+    private static final int SHAPE_OVERHEAD_BYTES = 256;
+
+    private final int mSourceByteCount;
+
+    private final int mSourceChecksum;
+
+    private final float mDocumentWidth;
+
+    private final float mDocumentHeight;
+
+    @Nullable
+    private final RectF mViewBox;
+
+    @NotNull
+    private final Shape[] mShapes;
+
+    private final int mByteCount;
+
+    private CompiledSvg(final int sourceByteCount, final int sourceChecksum, final float documentWidth, final float documentHeight,
+                        @Nullable final RectF viewBox, @NotNull final Shape[] shapes, final int byteCount) {
+        mSourceByteCount = sourceByteCount;
+        mSourceChecksum = sourceChecksum;
+        mDocumentWidth = documentWidth;
+        mDocumentHeight = documentHeight;
+        mViewBox = viewBox;
+        mShapes = shapes;
+        mByteCount = byteCount;
+    }
+
+    /**
+     * Reads the compiled form of given raw Svg resource.
+     *
+     * @return the CompiledSvg, or null if the resource was not compiled, or the compiled form is of another Svg by the same name.
+     */
+    @Nullable
+    static CompiledSvg load(@NotNull final Context context, final int svgResourceId) throws IOException {
+        Resources resources = context.getResources();
+        String assetName = ASSET_DIRECTORY + resources.getResourceEntryName(svgResourceId) + ASSET_EXTENSION;
+        AssetManager assets = context.getAssets();
+
+        ByteBuffer buffer;
+        try {
+            buffer = mapAsset(assets, assetName);
+        } catch (FileNotFoundException ignored) {
+            /* Either there is no such asset, or it is compressed */
+            try {
+                buffer = readAsset(assets, assetName);
+            } catch (FileNotFoundException ignoredAgain) {
+                return null;
+            }
+        }
+
+        CompiledSvg result = read(buffer);
+        return result.isCompiledFrom(resources, svgResourceId) ? result : null;
+    }
+
+    /**
+     * Returns whether this was compiled from the Svg given resource id resolves to, by comparing its size and CRC32.
+     */
+    boolean isCompiledFrom(@NotNull final Resources resources, final int svgResourceId) throws IOException {
+        InputStream inputStream = resources.openRawResource(svgResourceId);
+        try {
+            CRC32 checksum = new CRC32();
+            byte[] chunk = new byte[8192];
+            long byteCount = 0;
+            int count;
+            while ((count = inputStream.read(chunk)) != -1) {
+                checksum.update(chunk, 0, count);
+                byteCount += count;
+                if (byteCount > mSourceByteCount) {
+                    return false;
+                }
+            }
+            return byteCount == mSourceByteCount && (int) checksum.getValue() == mSourceChecksum;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @NotNull
+    private static ByteBuffer mapAsset(@NotNull final AssetManager assets, @NotNull final String assetName) throws IOException {
+        AssetFileDescriptor descriptor = assets.openFd(assetName);
+        try {
+            FileInputStream inputStream = descriptor.createInputStream();
+            FileChannel channel = inputStream.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength());
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    @NotNull
+    private static ByteBuffer readAsset(@NotNull final AssetManager assets, @NotNull final String assetName) throws IOException {
+        InputStream inputStream = assets.open(assetName);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int count;
+            while ((count = inputStream.read(chunk)) != -1) {
+                outputStream.write(chunk, 0, count);
+            }
+            return ByteBuffer.wrap(outputStream.toByteArray());
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @NotNull
+    static CompiledSvg read(@NotNull final ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a compiled Svg of version " + VERSION);
+            }
+
+            int sourceByteCount = buffer.getInt();
+            int sourceChecksum = buffer.getInt();
+            float documentWidth = buffer.getFloat();
+            float documentHeight = buffer.getFloat();
+            RectF viewBox = null;
+            if (buffer.get() != 0) {
+                float left = buffer.getFloat();
+                float top = buffer.getFloat();
+                viewBox = new RectF(left, top, left + buffer.getFloat(), top + buffer.getFloat());
+            }
+
+            Shape[] shapes = new Shape[buffer.getInt()];
+            for (int i = 0; i < shapes.length; i++) {
+                shapes[i] = readShape(buffer);
+            }
+            return new CompiledSvg(sourceByteCount, sourceChecksum, documentWidth, documentHeight, viewBox, shapes, buffer.capacity());
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated compiled Svg");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Invalid compiled Svg");
+        }
+    }
+
+    @NotNull
+    private static Shape readShape(@NotNull final ByteBuffer buffer) {
+        float a = buffer.getFloat();
+        float b = buffer.getFloat();
+        float c = buffer.getFloat();
+        float d = buffer.getFloat();
+        float e = buffer.getFloat();
+        float f = buffer.getFloat();
+        Matrix matrix = null;
+        if (a != 1 || b != 0 || c != 0 || d != 1 || e != 0 || f != 0) {
+            matrix = new Matrix();
+            matrix.setValues(new float[]{a, c, e, b, d, f, 0, 0, 1});
+        }
+
+        int flags = buffer.get();
+        Paint fillPaint = null;
+        if ((flags & FLAG_FILL) != 0) {
+            fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            fillPaint.setStyle(Paint.Style.FILL);
+            fillPaint.setColor(buffer.getInt());
+        }
+        Paint strokePaint = null;
+        if ((flags & FLAG_STROKE) != 0) {
+            strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            strokePaint.setStyle(Paint.Style.STROKE);
+            strokePaint.setColor(buffer.getInt());
+            strokePaint.setStrokeWidth(buffer.getFloat());
+            strokePaint.setStrokeCap(CAPS[buffer.get()]);
+            strokePaint.setStrokeJoin(JOINS[buffer.get()]);
+            strokePaint.setStrokeMiter(buffer.getFloat());
+        }
+
+        Path path = new Path();
+        path.setFillType((flags & FLAG_EVEN_ODD) == 0 ? Path.FillType.WINDING : Path.FillType.EVEN_ODD);
+        int commandCount = buffer.getInt();
+        for (int i = 0; i < commandCount; i++) {
+            switch (buffer.get()) {
+                case OP_MOVE:
+                    path.moveTo(buffer.getFloat(), buffer.getFloat());
+                    break;
+                case OP_LINE:
+                    path.lineTo(buffer.getFloat(), buffer.getFloat());
+                    break;
+                case OP_CUBIC:
+                    path.cubicTo(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                    break;
+                case OP_QUAD:
+                    path.quadTo(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                    break;
+                case OP_CLOSE:
+                    path.close();
+                    break;
+                default:
+                    throw new ArrayIndexOutOfBoundsException("Unknown path command");
+            }
+        }
+
+        return new Shape(path, matrix, fillPaint, strokePaint);
+    }
+
+    /**
+     * Returns the size of the compiled form in bytes.
+     */
+    int getByteCount() {
+        return mByteCount;
+    }
+
+    /**
+     * Returns the estimated memory the Svg uses once read, in bytes.
+     */
+    long getFootprintBytes() {
+        return mByteCount + (long) mShapes.length * SHAPE_OVERHEAD_BYTES;
+    }
+
+    @Override
+    public void renderToCanvas(@NotNull final Canvas canvas) {
+        render(canvas, canvas.getWidth(), canvas.getHeight());
+    }
+
+    @Override
+    public void renderToCanvas(@NotNull final Canvas canvas, final int viewportWidth, final int viewportHeight) {
+        render(canvas, viewportWidth, viewportHeight);
+    }
+
+    @NotNull
+    @Override
+    public Picture renderToPicture() {
+        float width = mDocumentWidth > 0 ? mDocumentWidth : mViewBox != null ? mViewBox.width() : DEFAULT_DOCUMENT_SIZE;
+        float height = mDocumentHeight > 0 ? mDocumentHeight : mViewBox != null ? mViewBox.height() : DEFAULT_DOCUMENT_SIZE;
+        return renderToPicture((int) Math.ceil(width), (int) Math.ceil(height));
+    }
+
+    @NotNull
+    @Override
+    public Picture renderToPicture(final int width, final int height) {
+        Picture picture = new Picture();
+        render(picture.beginRecording(width, height), width, height);
+        picture.endRecording();
+        return picture;
+    }
+
+    /**
+     * Renders the shapes into the viewport from (0, 0) to given size, fitting and centering the view box like xMidYMid meet.
+     * Like AndroidSVG, a document width or height given in pixels replaces that of the viewport.
+     */
+    private void render(@NotNull final Canvas canvas, final int viewportWidth, final int viewportHeight) {
+        float width = mDocumentWidth > 0 ? mDocumentWidth : viewportWidth;
+        float height = mDocumentHeight > 0 ? mDocumentHeight : viewportHeight;
+
+        int saveCount = canvas.save();
+        canvas.clipRect(0, 0, width, height);
+        if (mViewBox != null && mViewBox.width() > 0 && mViewBox.height() > 0) {
+            float scale = Math.min(width / mViewBox.width(), height / mViewBox.height());
+            canvas.translate((width - mViewBox.width() * scale) / 2 - mViewBox.left * scale,
+                    (height - mViewBox.height() * scale) / 2 - mViewBox.top * scale);
+            canvas.scale(scale, scale);
+        }
+
+        for (Shape shape : mShapes) {
+            shape.draw(canvas);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    private static class Shape {
+
+        @NotNull
+        private final Path mPath;
+
+        @Nullable
+        private final Matrix mMatrix;
+
+        @Nullable
+        private final Paint mFillPaint;
+
+        @Nullable
+        private final Paint mStrokePaint;
+
+        Shape(@NotNull final Path path, @Nullable final Matrix matrix, @Nullable final Paint fillPaint, @Nullable final Paint strokePaint) {
+            mPath = path;
+            mMatrix = matrix;
+            mFillPaint = fillPaint;
+            mStrokePaint = strokePaint;
+        }
+
+        void draw(@NotNull final Canvas canvas) {
+            if (mMatrix != null) {
+                canvas.save();
+                canvas.concat(mMatrix);
+            }
+            if (mFillPaint != null) {
+                canvas.drawPath(mPath, mFillPaint);
+            }
+            if (mStrokePaint != null) {
+                canvas.drawPath(mPath, mStrokePaint);
+            }
+            if (mMatrix != null) {
+                canvas.restore();
+            }
+        }
+    }
+}
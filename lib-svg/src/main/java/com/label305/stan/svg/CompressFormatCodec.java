@@ -0,0 +1,97 @@
+package com.label305.stan.svg;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A {@link BitmapCodec} which uses {@link Bitmap#compress(Bitmap.CompressFormat, int, OutputStream)} and {@link BitmapFactory}.
+ */
+class CompressFormatCodec implements BitmapCodec {
+
+    @NotNull
+    private final String mId;
+
+    @NotNull
+    private final Bitmap.CompressFormat mFormat;
+
+    private final int mQuality;
+
+    CompressFormatCodec(@NotNull final String id, @NotNull final Bitmap.CompressFormat format, final int quality) {
+        mId = id;
+        mFormat = format;
+        mQuality = quality;
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+        return mId;
+    }
+
+    @Override
+    public boolean canEncode(@NotNull final Bitmap bitmap) {
+        /* Masks would be decoded as ARGB_8888, which takes four times the memory */
+        return bitmap.getConfig() != Bitmap.Config.ALPHA_8;
+    }
+
+    @Override
+    public void encode(@NotNull final Bitmap bitmap, @NotNull final File file) throws IOException {
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            if (!bitmap.compress(mFormat, mQuality, outputStream)) {
+                throw new IOException("Could not compress bitmap as " + mFormat);
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Bitmap decode(@NotNull final File file) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            return decodeReusingBitmap(file);
+        }
+        return BitmapFactory.decodeFile(file.getAbsolutePath());
+    }
+
+    /**
+     * Lets the decoder reuse a bitmap of the same size from the {@link BitmapPool}, if there is one and the format allows it.
+     * Before API 19, only JPEG and PNG images can be decoded into an existing bitmap.
+     */
+    @TargetApi(11)
+    @Nullable
+    private static Bitmap decodeReusingBitmap(@NotNull final File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+
+        boolean canReuse = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                || "image/png".equals(options.outMimeType) || "image/jpeg".equals(options.outMimeType);
+        if (canReuse && options.outWidth > 0 && options.outHeight > 0) {
+            options.inBitmap = BitmapPool.getInstance().getUnused(options.outWidth, options.outHeight, Bitmap.Config.ARGB_8888);
+        }
+
+        Bitmap result = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if (result == null && options.inBitmap != null) {
+            /* BitmapFactory returns null rather than throwing when the pooled bitmap can't be reused, so decode into a new bitmap */
+            BitmapPool.getInstance().recycle(options.inBitmap);
+            options.inBitmap = null;
+            result = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        }
+        return result;
+    }
+}
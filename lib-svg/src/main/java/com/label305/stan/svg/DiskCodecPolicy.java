@@ -0,0 +1,84 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Decides how bitmaps are stored in the disk cache of the {@link BitmapCache}.
+ */
+public enum DiskCodecPolicy {
+
+    /**
+     * Stores bitmaps uncompressed, so they are read back without decoding. Takes the most disk space.
+     */
+    FASTEST {
+        @NotNull
+        @Override
+        BitmapCodec chooseCodec(@NotNull final Bitmap bitmap) {
+            return RAW.canEncode(bitmap) ? RAW : PNG;
+        }
+    },
+
+    /**
+     * Stores small bitmaps uncompressed, and larger bitmaps as PNG.
+     */
+    BALANCED {
+        @NotNull
+        @Override
+        BitmapCodec chooseCodec(@NotNull final Bitmap bitmap) {
+            return bitmap.getRowBytes() * bitmap.getHeight() <= RAW_MAX_BYTES && RAW.canEncode(bitmap) || !PNG.canEncode(bitmap) ? RAW : PNG;
+        }
+    },
+
+    /**
+     * Stores bitmaps as PNG, which is lossless. ALPHA_8 masks are stored uncompressed, which is already a quarter of the size.
+     */
+    SMALLEST {
+        @NotNull
+        @Override
+        BitmapCodec chooseCodec(@NotNull final Bitmap bitmap) {
+            return PNG.canEncode(bitmap) ? PNG : RAW;
+        }
+    },
+
+    /**
+     * Stores bitmaps as WebP at full quality. Smaller than PNG, but lossy at the API levels this library supports.
+     * ALPHA_8 masks are stored uncompressed.
+     */
+    WEBP {
+        @NotNull
+        @Override
+        BitmapCodec chooseCodec(@NotNull final Bitmap bitmap) {
+            return WEBP_CODEC.canEncode(bitmap) ? WEBP_CODEC : RAW;
+        }
+    };
+
+    /**
+     * The largest uncompressed size of a bitmap which is stored uncompressed by {@link #BALANCED}.
+     */
+    private static final int RAW_MAX_BYTES = 64 * 1024;
+
+    static final BitmapCodec PNG = new CompressFormatCodec("png", Bitmap.CompressFormat.PNG, 100);
+
+    static final BitmapCodec WEBP_CODEC = new CompressFormatCodec("webp", Bitmap.CompressFormat.WEBP, 100);
+
+    static final BitmapCodec RAW = new RawBitmapCodec();
+
+    @NotNull
+    abstract BitmapCodec chooseCodec(@NotNull Bitmap bitmap);
+
+    /**
+     * Returns the codec with given id, or null if there is none.
+     */
+    @Nullable
+    static BitmapCodec getCodec(@NotNull final String id) {
+        for (BitmapCodec codec : new BitmapCodec[]{PNG, WEBP_CODEC, RAW}) {
+            if (codec.getId().equals(id)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
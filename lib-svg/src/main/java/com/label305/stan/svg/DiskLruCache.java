@@ -0,0 +1,676 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+
+import com.label305.stan.Logger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A size-bounded disk cache for bitmaps, which evicts the least recently used entries.
+ * <p/>
+ * Entries are stored in files named by the MD5 hash of their key, using the {@link BitmapCodec} chosen by the {@link DiskCodecPolicy}.
+ * A journal records every write, read and removal, including the codec and key hash of each entry,
+ * so the index can be restored without scanning the directory. The index is loaded on the writer thread when the cache is first used.
+ * A Bloom filter of the key hashes answers most lookups of missing keys without hashing the key or locking the index.
+ * <p/>
+ * A write is recorded as DIRTY before its file is written, and as CLEAN once it is complete.
+ * The files of DIRTY records without a later CLEAN or REMOVE record, left by interrupted writes, are removed when the index is loaded.
+ * <p/>
+ * All writes, including journal writes, happen on a single writer thread with a bounded queue;
+ * writes that don't fit in the queue are dropped. Reads block, so they must happen on a background thread.
+ */
+class DiskLruCache {
+
+    private static final String JOURNAL_FILE = "journal";
+
+    private static final String JOURNAL_FILE_TEMP = "journal.tmp";
+
+    private static final String JOURNAL_HEADER = "stan.DiskLruCache 4";
+
+    private static final String DIRTY = "DIRTY";
+
+    private static final String CLEAN = "CLEAN";
+
+    private static final String READ = "READ";
+
+    private static final String REMOVE = "REMOVE";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int WRITE_QUEUE_CAPACITY = 32;
+
+    /**
+     * The number of redundant journal lines after which the journal is rewritten.
+     */
+    private static final int REDUNDANT_LINE_THRESHOLD = 1000;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    @NotNull
+    private final File mDirectory;
+
+    /**
+     * The entries by their file name, in access order.
+     */
+    @NotNull
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(0, 0.75f, true);
+
+    @NotNull
+    private final ThreadPoolExecutor mWriteExecutor;
+
+    @NotNull
+    private final CountDownLatch mIndexLoadedLatch = new CountDownLatch(1);
+
+    @NotNull
+    private final AtomicBoolean mIndexLoadStarted = new AtomicBoolean();
+
+    /**
+     * The hashes of the keys of the entries, and of some removed entries until it is rebuilt.
+     */
+    @NotNull
+    private volatile BloomFilter mBloomFilter = new BloomFilter(0);
+
+    @NotNull
+    private final StatsRecorder mStatsRecorder;
+
+    @NotNull
+    private volatile DiskCodecPolicy mCodecPolicy = DiskCodecPolicy.BALANCED;
+
+    private long mMaxSizeBytes;
+
+    private long mSizeBytes;
+
+    private int mRedundantLineCount;
+
+    /**
+     * Only accessed on the writer thread.
+     */
+    @Nullable
+    private Writer mJournalWriter;
+
+    /**
+     * The file name of the write in progress, which a rebuilt journal records as DIRTY. Only accessed on the writer thread.
+     */
+    @Nullable
+    private String mDirtyFileName;
+
+    /**
+     * @param statsRecorder records the write times and evictions of the cache.
+     */
+    DiskLruCache(@NotNull final File directory, final long maxSizeBytes, @NotNull final StatsRecorder statsRecorder) {
+        mDirectory = directory;
+        mMaxSizeBytes = maxSizeBytes;
+        mStatsRecorder = statsRecorder;
+        mWriteExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(WRITE_QUEUE_CAPACITY), new DiscardWritePolicy());
+    }
+
+    /**
+     * Returns whether an entry for given key exists. Does not touch the disk, and returns false while the index is being loaded.
+     */
+    boolean contains(@NotNull final String key) {
+        loadIndexAsync();
+        if (mIndexLoadedLatch.getCount() > 0 || !mBloomFilter.mightContain(key.hashCode())) {
+            return false;
+        }
+
+        synchronized (this) {
+            return mEntries.containsKey(makeFileName(key));
+        }
+    }
+
+    /**
+     * Reads the bitmap for given key from disk. Blocks until the index has been loaded and the bitmap has been decoded.
+     *
+     * @return the bitmap, or null if there is no entry for given key.
+     */
+    @Nullable
+    Bitmap get(@NotNull final String key) {
+        loadIndexAsync();
+        awaitIndex();
+        if (!mBloomFilter.mightContain(key.hashCode())) {
+            return null;
+        }
+
+        String fileName = makeFileName(key);
+        Entry entry;
+        synchronized (this) {
+            entry = mEntries.get(fileName);
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        Bitmap result;
+        try {
+            result = entry.mCodec.decode(new File(mDirectory, fileName));
+        } catch (IOException e) {
+            Logger.log(e);
+            result = null;
+        }
+        if (result == null) {
+            mWriteExecutor.execute(new RemoveRunnable(fileName));
+        } else {
+            /* The decoder may have reused a pooled bitmap, which now belongs to the caller */
+            BitmapPool.getInstance().disown(result);
+            mWriteExecutor.execute(new JournalRunnable(READ, fileName));
+        }
+        return result;
+    }
+
+    /**
+     * Schedules given bitmap to be written for given key.
+     * The bitmap should not be modified or recycled afterwards.
+     */
+    void put(@NotNull final String key, @NotNull final Bitmap bitmap) {
+        loadIndexAsync();
+        BitmapPool.getInstance().acquire(bitmap);
+        mWriteExecutor.execute(new PutRunnable(key, bitmap));
+    }
+
+    /**
+     * Sets the policy which chooses the codec of entries written from now on.
+     */
+    void setCodecPolicy(@NotNull final DiskCodecPolicy codecPolicy) {
+        mCodecPolicy = codecPolicy;
+    }
+
+    synchronized long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    synchronized long getMaxSizeBytes() {
+        return mMaxSizeBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes the cache may use on disk, evicting entries if needed.
+     */
+    void setMaxSizeBytes(final long maxSizeBytes) {
+        synchronized (this) {
+            mMaxSizeBytes = maxSizeBytes;
+        }
+        loadIndexAsync();
+        mWriteExecutor.execute(new TrimRunnable());
+    }
+
+    /**
+     * Blocks until the writes scheduled so far are done, or dropped because the queue is full. Used by tests.
+     */
+    void awaitWrites() {
+        loadIndexAsync();
+        WritesDoneRunnable writesDone = new WritesDoneRunnable();
+        mWriteExecutor.execute(writesDone);
+        boolean interrupted = false;
+        while (writesDone.mLatch.getCount() > 0) {
+            try {
+                writesDone.mLatch.await();
+            } catch (InterruptedException ignored) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Schedules the index to be loaded on the writer thread, if that has not been done yet.
+     */
+    private void loadIndexAsync() {
+        if (mIndexLoadStarted.compareAndSet(false, true)) {
+            mWriteExecutor.execute(new LoadIndexRunnable());
+        }
+    }
+
+    private void awaitIndex() {
+        boolean interrupted = false;
+        while (mIndexLoadedLatch.getCount() > 0) {
+            try {
+                mIndexLoadedLatch.await();
+            } catch (InterruptedException ignored) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @NotNull
+    static String makeFileName(@NotNull final String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            char[] result = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                result[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+                result[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+            }
+            return new String(result);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /* Writer thread methods */
+
+    private void loadIndex() {
+        File journal = new File(mDirectory, JOURNAL_FILE);
+        boolean isJournalStale;
+        if (journal.exists()) {
+            try {
+                isJournalStale = removeUnfinishedWrites(readJournal(journal));
+            } catch (IOException e) {
+                Logger.log(e);
+                clear();
+                isJournalStale = true;
+            }
+        } else {
+            clear();
+            isJournalStale = true;
+        }
+
+        try {
+            if (isJournalStale || mRedundantLineCount > REDUNDANT_LINE_THRESHOLD) {
+                rebuildJournal();
+            } else {
+                mJournalWriter = new BufferedWriter(new FileWriter(journal, true));
+            }
+        } catch (IOException e) {
+            Logger.log(e);
+        }
+        rebuildBloomFilter();
+        trimToSize();
+    }
+
+    /**
+     * Restores the index from given journal.
+     *
+     * @return the file names of the writes which were started but not completed or removed.
+     */
+    @NotNull
+    private Set<String> readJournal(@NotNull final File journal) throws IOException {
+        Set<String> dirtyFileNames = new HashSet<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), "US-ASCII"));
+        try {
+            if (!JOURNAL_HEADER.equals(reader.readLine())) {
+                throw new IOException("Unexpected journal header");
+            }
+
+            int lineCount = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineCount++;
+                String[] parts = line.split(" ");
+                synchronized (this) {
+                    if (DIRTY.equals(parts[0]) && parts.length == 2) {
+                        dirtyFileNames.add(parts[1]);
+                    } else if (CLEAN.equals(parts[0]) && parts.length == 5) {
+                        dirtyFileNames.remove(parts[1]);
+                        BitmapCodec codec = DiskCodecPolicy.getCodec(parts[3]);
+                        if (codec == null) {
+                            throw new IOException("Unknown codec " + parts[3]);
+                        }
+                        Entry previous = mEntries.put(parts[1], new Entry(Long.parseLong(parts[2]), codec, (int) Long.parseLong(parts[4], 16)));
+                        mSizeBytes += Long.parseLong(parts[2]) - (previous == null ? 0 : previous.mSize);
+                    } else if (READ.equals(parts[0]) && parts.length == 2) {
+                        mEntries.get(parts[1]);
+                    } else if (REMOVE.equals(parts[0]) && parts.length == 2) {
+                        dirtyFileNames.remove(parts[1]);
+                        Entry previous = mEntries.remove(parts[1]);
+                        mSizeBytes -= previous == null ? 0 : previous.mSize;
+                    }
+                    /* Incomplete lines from an interrupted write are ignored */
+                }
+            }
+
+            synchronized (this) {
+                mRedundantLineCount = lineCount - mEntries.size();
+            }
+            return dirtyFileNames;
+        } catch (NumberFormatException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Removes every file in the cache directory. Only called when there is no usable journal.
+     */
+    private void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        synchronized (this) {
+            mEntries.clear();
+            mSizeBytes = 0;
+        }
+    }
+
+    /**
+     * Removes the files of given interrupted writes, which may be partially written or not recorded as entries.
+     *
+     * @return whether there were such writes, so the journal should be rebuilt.
+     */
+    private boolean removeUnfinishedWrites(@NotNull final Set<String> dirtyFileNames) {
+        for (String fileName : dirtyFileNames) {
+            synchronized (this) {
+                Entry entry = mEntries.remove(fileName);
+                mSizeBytes -= entry == null ? 0 : entry.mSize;
+            }
+            //noinspection ResultOfMethodCallIgnored
+            new File(mDirectory, fileName + TEMP_SUFFIX).delete();
+            //noinspection ResultOfMethodCallIgnored
+            new File(mDirectory, fileName).delete();
+        }
+        return !dirtyFileNames.isEmpty();
+    }
+
+    private void rebuildJournal() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.close();
+        }
+
+        List<String> fileNames;
+        synchronized (this) {
+            fileNames = new ArrayList<>(mEntries.keySet());
+        }
+
+        File tempJournal = new File(mDirectory, JOURNAL_FILE_TEMP);
+        Writer writer = new BufferedWriter(new FileWriter(tempJournal));
+        try {
+            writer.write(JOURNAL_HEADER + '\n');
+            synchronized (this) {
+                for (String fileName : fileNames) {
+                    Entry entry = mEntries.get(fileName);
+                    if (entry != null) {
+                        writer.write(makeCleanLine(fileName, entry) + '\n');
+                    }
+                }
+            }
+            if (mDirtyFileName != null) {
+                writer.write(DIRTY + ' ' + mDirtyFileName + '\n');
+            }
+        } finally {
+            writer.close();
+        }
+
+        File journal = new File(mDirectory, JOURNAL_FILE);
+        if (!tempJournal.renameTo(journal)) {
+            throw new IOException("Could not rename journal");
+        }
+        mJournalWriter = new BufferedWriter(new FileWriter(journal, true));
+        mRedundantLineCount = 0;
+        rebuildBloomFilter();
+    }
+
+    /**
+     * Replaces the Bloom filter by one which holds exactly the current entries, with room for as many new ones.
+     */
+    private void rebuildBloomFilter() {
+        synchronized (this) {
+            BloomFilter bloomFilter = new BloomFilter(mEntries.size() * 2);
+            for (Entry entry : mEntries.values()) {
+                bloomFilter.add(entry.mKeyHash);
+            }
+            mBloomFilter = bloomFilter;
+        }
+    }
+
+    @NotNull
+    private static String makeCleanLine(@NotNull final String fileName, @NotNull final Entry entry) {
+        return CLEAN + ' ' + fileName + ' ' + entry.mSize + ' ' + entry.mCodec.getId() + ' ' + Integer.toHexString(entry.mKeyHash);
+    }
+
+    private void writeJournal(@NotNull final String line) {
+        if (mJournalWriter == null) {
+            return;
+        }
+
+        try {
+            mJournalWriter.write(line + '\n');
+            mJournalWriter.flush();
+            mRedundantLineCount++;
+            int entryCount;
+            synchronized (this) {
+                entryCount = mEntries.size();
+            }
+            if (mRedundantLineCount > REDUNDANT_LINE_THRESHOLD && mRedundantLineCount > entryCount) {
+                rebuildJournal();
+            }
+        } catch (IOException e) {
+            Logger.log(e);
+        }
+    }
+
+    private void trimToSize() {
+        while (true) {
+            String eldest;
+            synchronized (this) {
+                if (mSizeBytes <= mMaxSizeBytes || mEntries.isEmpty()) {
+                    return;
+                }
+                Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+                Map.Entry<String, Entry> entry = iterator.next();
+                eldest = entry.getKey();
+            }
+            remove(eldest);
+            mStatsRecorder.recordEviction(CacheStats.EvictionReason.DISK_SIZE);
+        }
+    }
+
+    private void remove(@NotNull final String fileName) {
+        synchronized (this) {
+            Entry entry = mEntries.remove(fileName);
+            if (entry == null) {
+                return;
+            }
+            mSizeBytes -= entry.mSize;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDirectory, fileName).delete();
+        writeJournal(REMOVE + ' ' + fileName);
+    }
+
+    private class LoadIndexRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                //noinspection ResultOfMethodCallIgnored
+                mDirectory.mkdirs();
+                loadIndex();
+            } finally {
+                mIndexLoadedLatch.countDown();
+            }
+        }
+    }
+
+    private class PutRunnable implements Runnable {
+
+        @NotNull
+        private final String mKey;
+
+        @NotNull
+        private final Bitmap mBitmap;
+
+        PutRunnable(@NotNull final String key, @NotNull final Bitmap bitmap) {
+            mKey = key;
+            mBitmap = bitmap;
+        }
+
+        @Override
+        public void run() {
+            try {
+                write();
+            } finally {
+                BitmapPool.getInstance().release(mBitmap);
+            }
+        }
+
+        private void write() {
+            String fileName = makeFileName(mKey);
+            synchronized (DiskLruCache.this) {
+                if (mEntries.containsKey(fileName)) {
+                    return;
+                }
+            }
+
+            long startNanos = System.nanoTime();
+            BitmapCodec codec = mCodecPolicy.chooseCodec(mBitmap);
+            File tempFile = new File(mDirectory, fileName + TEMP_SUFFIX);
+            File file = new File(mDirectory, fileName);
+            mDirtyFileName = fileName;
+            writeJournal(DIRTY + ' ' + fileName);
+            try {
+                codec.encode(mBitmap, tempFile);
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("Could not rename " + tempFile);
+                }
+                mStatsRecorder.recordLoadTime(CacheStats.LoadType.DISK_WRITE, System.nanoTime() - startNanos);
+            } catch (IOException e) {
+                Logger.log(e);
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+                mDirtyFileName = null;
+                writeJournal(REMOVE + ' ' + fileName);
+                return;
+            }
+
+            Entry entry = new Entry(file.length(), codec, mKey.hashCode());
+            boolean isBloomFilterFull;
+            synchronized (DiskLruCache.this) {
+                mEntries.put(fileName, entry);
+                mSizeBytes += entry.mSize;
+                isBloomFilterFull = mEntries.size() > mBloomFilter.getCapacity();
+            }
+            if (isBloomFilterFull) {
+                rebuildBloomFilter();
+            } else {
+                mBloomFilter.add(entry.mKeyHash);
+            }
+            mDirtyFileName = null;
+            writeJournal(makeCleanLine(fileName, entry));
+            trimToSize();
+        }
+    }
+
+    private static class Entry {
+
+        private final long mSize;
+
+        @NotNull
+        private final BitmapCodec mCodec;
+
+        /**
+         * The {@link String#hashCode()} of the key, for the Bloom filter.
+         */
+        private final int mKeyHash;
+
+        Entry(final long size, @NotNull final BitmapCodec codec, final int keyHash) {
+            mSize = size;
+            mCodec = codec;
+            mKeyHash = keyHash;
+        }
+    }
+
+    /**
+     * Drops writes which don't fit in the queue, releasing their bitmaps.
+     */
+    private static class DiscardWritePolicy extends ThreadPoolExecutor.DiscardPolicy {
+
+        @Override
+        public void rejectedExecution(final Runnable r, final ThreadPoolExecutor e) {
+            if (r instanceof PutRunnable) {
+                BitmapPool.getInstance().release(((PutRunnable) r).mBitmap);
+            } else if (r instanceof WritesDoneRunnable) {
+                r.run();
+            }
+        }
+    }
+
+    private static class WritesDoneRunnable implements Runnable {
+
+        @NotNull
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+
+        @Override
+        public void run() {
+            mLatch.countDown();
+        }
+    }
+
+    private class JournalRunnable implements Runnable {
+
+        @NotNull
+        private final String mAction;
+
+        @NotNull
+        private final String mFileName;
+
+        JournalRunnable(@NotNull final String action, @NotNull final String fileName) {
+            mAction = action;
+            mFileName = fileName;
+        }
+
+        @Override
+        public void run() {
+            writeJournal(mAction + ' ' + mFileName);
+        }
+    }
+
+    private class RemoveRunnable implements Runnable {
+
+        @NotNull
+        private final String mFileName;
+
+        RemoveRunnable(@NotNull final String fileName) {
+            mFileName = fileName;
+        }
+
+        @Override
+        public void run() {
+            remove(mFileName);
+        }
+    }
+
+    private class TrimRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            trimToSize();
+        }
+    }
+}
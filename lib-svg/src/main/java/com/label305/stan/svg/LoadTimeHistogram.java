@@ -0,0 +1,101 @@
+package com.label305.stan.svg;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the distribution of load times of one kind of load, such as parsing Svgs.
+ * <p/>
+ * Load times are counted in buckets of doubling width: bucket 0 holds loads shorter than 2 microseconds, and bucket {@code i}
+ * holds loads of at least 2<sup>i</sup> and less than 2<sup>i + 1</sup> microseconds. The last bucket also holds all longer loads.
+ */
+public final class LoadTimeHistogram {
+
+    static final int BUCKET_COUNT = 32;
+
+    @NotNull
+    private final long[] mBucketCounts;
+
+    private final long mCount;
+
+    private final long mTotalNanos;
+
+    LoadTimeHistogram(@NotNull final long[] bucketCounts, final long totalNanos) {
+        mBucketCounts = bucketCounts;
+        long count = 0;
+        for (long bucketCount : bucketCounts) {
+            count += bucketCount;
+        }
+        mCount = count;
+        mTotalNanos = totalNanos;
+    }
+
+    /**
+     * Returns the number of loads.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    /**
+     * Returns the mean load time, or 0 if there were no loads.
+     */
+    public long getMeanNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    /**
+     * Returns an upper bound of the load time below which given fraction of the loads finished, or 0 if there were no loads.
+     *
+     * @param fraction the fraction, such as 0.95 for the 95th percentile.
+     */
+    public long getPercentileNanos(final double fraction) {
+        long threshold = (long) Math.ceil(mCount * Math.max(0, Math.min(1, fraction)));
+        long count = 0;
+        for (int i = 0; i < mBucketCounts.length; i++) {
+            count += mBucketCounts[i];
+            if (count > 0 && count >= threshold) {
+                return getBucketUpperBoundNanos(i);
+            }
+        }
+        return 0;
+    }
+
+    public int getBucketCount() {
+        return mBucketCounts.length;
+    }
+
+    /**
+     * Returns the number of loads in given bucket.
+     */
+    public long getCountInBucket(final int bucket) {
+        return mBucketCounts[bucket];
+    }
+
+    /**
+     * Returns the exclusive upper bound of the load times in given bucket.
+     */
+    public static long getBucketUpperBoundNanos(final int bucket) {
+        return TimeUnit.MICROSECONDS.toNanos(2L << bucket);
+    }
+
+    /**
+     * Returns the bucket of given load time.
+     */
+    static int getBucket(final long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1, micros));
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "LoadTimeHistogram{count=" + mCount + ", meanNanos=" + getMeanNanos() + ", p50Nanos=" + getPercentileNanos(0.5)
+                + ", p95Nanos=" + getPercentileNanos(0.95) + '}';
+    }
+}
@@ -0,0 +1,195 @@
+package com.label305.stan.svg;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The memory budget shared by the memory caches of lib-svg, accounted in bytes.
+ * <p/>
+ * Every entry has a size and a cost, the time it took to build. When the caches together outgrow the budget, the least valuable
+ * entry of any cache is evicted first, using GreedyDual-Size: an entry is worth its cost per byte plus the worth of the last evicted entry
+ * at the time it was last used. Cheap, large entries therefore go before expensive, small ones, and entries which are not used age out.
+ * <p/>
+ * {@link BudgetedCache}s synchronize on the budget, so all caches share a single lock.
+ * The unused bitmaps of the {@link BitmapPool} count against the budget too: the pool only uses the room the caches leave free.
+ */
+final class MemoryBudget {
+
+    /**
+     * The cost assumed for entries of which the build time was not measured.
+     */
+    static final long DEFAULT_COST_NANOS = 1000000;
+
+    @Nullable
+    private static MemoryBudget sInstance;
+
+    /**
+     * The entries of all caches, least valuable first.
+     */
+    @NotNull
+    private final TreeSet<Entry<?, ?>> mEntries = new TreeSet<>();
+
+    private final long mMaxSizeBytes;
+
+    /**
+     * Only changed while holding the lock of this budget, but read without it by the {@link BitmapPool}.
+     */
+    private volatile long mSizeBytes;
+
+    /**
+     * The worth of the last evicted entry, which entries that are used from now on are worth on top of their own.
+     */
+    private double mInflation;
+
+    private long mSequence;
+
+    private MemoryBudget(final long maxSizeBytes) {
+        mMaxSizeBytes = maxSizeBytes;
+    }
+
+    @NotNull
+    static MemoryBudget getInstance() {
+        synchronized (MemoryBudget.class) {
+            if (sInstance == null) {
+                final MemoryBudget budget = new MemoryBudget(Runtime.getRuntime().maxMemory() / 6);
+                MemoryTrimmer.getInstance().addTrimmable(new MemoryTrimmer.Trimmable() {
+                    @Override
+                    public void trimToFraction(final float fraction) {
+                        budget.trimToFraction(fraction);
+                    }
+                });
+                sInstance = budget;
+            }
+            return sInstance;
+        }
+    }
+
+    long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    long getMaxSizeBytes() {
+        return mMaxSizeBytes;
+    }
+
+    /**
+     * Evicts entries until the caches use at most given fraction of the budget.
+     */
+    void trimToFraction(final float fraction) {
+        List<Entry<?, ?>> evicted;
+        synchronized (this) {
+            evicted = evict((long) (mMaxSizeBytes * fraction));
+        }
+        notifyRemoved(evicted, CacheStats.EvictionReason.MEMORY_PRESSURE);
+    }
+
+    /**
+     * Adds given entry, and evicts entries until the caches fit the budget again. Must be called while holding the lock of this budget.
+     *
+     * @return the evicted entries, which may include given entry itself.
+     */
+    @NotNull
+    List<Entry<?, ?>> add(@NotNull final Entry<?, ?> entry) {
+        entry.mSequence = mSequence++;
+        entry.mWorth = mInflation + entry.getCostPerByte();
+        mEntries.add(entry);
+        mSizeBytes += entry.mSizeBytes;
+        return evict((long) (mMaxSizeBytes * MemoryTrimmer.getInstance().getSizeFraction()));
+    }
+
+    /**
+     * Marks given entry as used. Must be called while holding the lock of this budget.
+     */
+    void touch(@NotNull final Entry<?, ?> entry) {
+        if (mEntries.remove(entry)) {
+            entry.mWorth = mInflation + entry.getCostPerByte();
+            mEntries.add(entry);
+        }
+    }
+
+    /**
+     * Removes given entry without evicting it. Must be called while holding the lock of this budget.
+     */
+    void remove(@NotNull final Entry<?, ?> entry) {
+        if (mEntries.remove(entry)) {
+            mSizeBytes -= entry.mSizeBytes;
+        }
+    }
+
+    @NotNull
+    private List<Entry<?, ?>> evict(final long maxSizeBytes) {
+        List<Entry<?, ?>> evicted = new ArrayList<>();
+        while (mSizeBytes > maxSizeBytes && !mEntries.isEmpty()) {
+            Entry<?, ?> entry = mEntries.pollFirst();
+            mSizeBytes -= entry.mSizeBytes;
+            mInflation = entry.mWorth;
+            entry.detach();
+            evicted.add(entry);
+        }
+        return evicted;
+    }
+
+    /**
+     * Notifies the caches of given removed entries. Must be called without holding the lock of this budget.
+     */
+    static void notifyRemoved(@NotNull final List<Entry<?, ?>> entries, @NotNull final CacheStats.EvictionReason reason) {
+        for (Entry<?, ?> entry : entries) {
+            entry.notifyRemoved(reason);
+        }
+    }
+
+    /**
+     * An entry of a {@link BudgetedCache}.
+     */
+    static final class Entry<K, V> implements Comparable<Entry<?, ?>> {
+
+        @NotNull
+        private final BudgetedCache<K, V> mCache;
+
+        @NotNull
+        final K mKey;
+
+        @NotNull
+        final V mValue;
+
+        final long mSizeBytes;
+
+        private final long mCostNanos;
+
+        private double mWorth;
+
+        private long mSequence;
+
+        Entry(@NotNull final BudgetedCache<K, V> cache, @NotNull final K key, @NotNull final V value, final long sizeBytes, final long costNanos) {
+            mCache = cache;
+            mKey = key;
+            mValue = value;
+            mSizeBytes = Math.max(1, sizeBytes);
+            mCostNanos = Math.max(1, costNanos);
+        }
+
+        private double getCostPerByte() {
+            return (double) mCostNanos / mSizeBytes;
+        }
+
+        private void detach() {
+            mCache.detach(this);
+        }
+
+        private void notifyRemoved(@NotNull final CacheStats.EvictionReason reason) {
+            mCache.onRemoved(this, reason);
+        }
+
+        @Override
+        public int compareTo(@NotNull final Entry<?, ?> another) {
+            if (mWorth != another.mWorth) {
+                return mWorth < another.mWorth ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : mSequence == another.mSequence ? 0 : 1;
+        }
+    }
+}
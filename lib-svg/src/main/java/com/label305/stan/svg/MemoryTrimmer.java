@@ -0,0 +1,197 @@
+package com.label305.stan.svg;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.SystemClock;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Shrinks the caches of lib-svg when the system signals memory pressure through {@link ComponentCallbacks2#onTrimMemory(int)},
+ * and lets them grow back gradually afterwards.
+ * <p/>
+ * Each trim level shrinks the caches to a fraction of their maximum size, see {@link #setTrimFraction(int, float)}.
+ * Unused pooled bitmaps are freed entirely, after the caches have been trimmed. Once trimmed, the caches grow back
+ * by {@value #REGROW_STEP} of their maximum size for every regrow interval in which the caches are used, without new memory pressure.
+ * <p/>
+ * The trimmer registers itself with the application as of API 14. On older API levels,
+ * forward {@link #onTrimMemory(int)} and {@link #onLowMemory()} from your Application.
+ */
+public final class MemoryTrimmer {
+
+    private static final float REGROW_STEP = 0.25f;
+
+    private static final long DEFAULT_REGROW_INTERVAL_MS = 30000;
+
+    @Nullable
+    private static MemoryTrimmer sInstance;
+
+    /**
+     * The fractions to trim to, by the lowest trim level they apply to.
+     */
+    @NotNull
+    private final TreeMap<Integer, Float> mTrimFractions = new TreeMap<>();
+
+    @NotNull
+    private final List<Trimmable> mTrimmables = new ArrayList<>();
+
+    private volatile float mSizeFraction = 1;
+
+    private volatile long mLastChangeTimeMs;
+
+    private volatile long mRegrowIntervalMs = DEFAULT_REGROW_INTERVAL_MS;
+
+    private boolean mIsRegistered;
+
+    private MemoryTrimmer() {
+        mTrimFractions.put(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, 0.75f);
+        mTrimFractions.put(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, 0.5f);
+        mTrimFractions.put(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, 0.25f);
+        mTrimFractions.put(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, 0.5f);
+        mTrimFractions.put(ComponentCallbacks2.TRIM_MEMORY_MODERATE, 0.25f);
+        mTrimFractions.put(ComponentCallbacks2.TRIM_MEMORY_COMPLETE, 0f);
+    }
+
+    @NotNull
+    public static MemoryTrimmer getInstance() {
+        synchronized (MemoryTrimmer.class) {
+            if (sInstance == null) {
+                sInstance = new MemoryTrimmer();
+            }
+            return sInstance;
+        }
+    }
+
+    /**
+     * Sets the fraction of their maximum size the caches are trimmed to, for given trim level and higher levels up to the next configured level.
+     *
+     * @param level    a trim level, such as {@link ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN}.
+     * @param fraction the fraction, from 0 to 1.
+     */
+    public void setTrimFraction(final int level, final float fraction) {
+        synchronized (mTrimFractions) {
+            mTrimFractions.put(level, Math.max(0, Math.min(1, fraction)));
+        }
+    }
+
+    /**
+     * Sets the time after which trimmed caches take one step towards their maximum size again. Defaults to 30 seconds.
+     */
+    public void setRegrowIntervalMs(final long regrowIntervalMs) {
+        mRegrowIntervalMs = regrowIntervalMs;
+    }
+
+    public void onTrimMemory(final int level) {
+        Float fraction;
+        synchronized (mTrimFractions) {
+            Map.Entry<Integer, Float> entry = mTrimFractions.floorEntry(level);
+            fraction = entry == null ? null : entry.getValue();
+        }
+        if (fraction != null) {
+            trimToFraction(fraction);
+        }
+    }
+
+    public void onLowMemory() {
+        trimToFraction(0);
+    }
+
+    /**
+     * Registers the trimmer for memory callbacks of the application of given context, if it has not done so already.
+     */
+    void register(@NotNull final Context context) {
+        synchronized (this) {
+            if (mIsRegistered) {
+                return;
+            }
+            mIsRegistered = true;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            registerComponentCallbacks(context.getApplicationContext());
+        }
+    }
+
+    @TargetApi(14)
+    private void registerComponentCallbacks(@NotNull final Context applicationContext) {
+        applicationContext.registerComponentCallbacks(new TrimCallbacks());
+    }
+
+    void addTrimmable(@NotNull final Trimmable trimmable) {
+        synchronized (mTrimmables) {
+            mTrimmables.add(trimmable);
+        }
+    }
+
+    /**
+     * Returns the fraction of their maximum size the caches may currently use.
+     * Takes a step towards the maximum size when the regrow interval has passed since the last change.
+     */
+    float getSizeFraction() {
+        float fraction = mSizeFraction;
+        if (fraction < 1) {
+            long now = SystemClock.elapsedRealtime();
+            synchronized (this) {
+                if (mSizeFraction < 1 && now - mLastChangeTimeMs >= mRegrowIntervalMs) {
+                    mSizeFraction = Math.min(1, mSizeFraction + REGROW_STEP);
+                    mLastChangeTimeMs = now;
+                }
+                fraction = mSizeFraction;
+            }
+        }
+        return fraction;
+    }
+
+    private void trimToFraction(final float fraction) {
+        synchronized (this) {
+            mSizeFraction = Math.min(mSizeFraction, fraction);
+            mLastChangeTimeMs = SystemClock.elapsedRealtime();
+        }
+
+        List<Trimmable> trimmables;
+        synchronized (mTrimmables) {
+            trimmables = new ArrayList<>(mTrimmables);
+        }
+        for (Trimmable trimmable : trimmables) {
+            trimmable.trimToFraction(mSizeFraction);
+        }
+
+        /* Evicted bitmaps are released into the pool, so it is emptied last */
+        BitmapPool.getInstance().clear();
+    }
+
+    /**
+     * A cache which can be trimmed to a fraction of its maximum size.
+     */
+    interface Trimmable {
+
+        void trimToFraction(float fraction);
+    }
+
+    @TargetApi(14)
+    private class TrimCallbacks implements ComponentCallbacks2 {
+
+        @Override
+        public void onTrimMemory(final int level) {
+            MemoryTrimmer.this.onTrimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(final Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            MemoryTrimmer.this.onLowMemory();
+        }
+    }
+}
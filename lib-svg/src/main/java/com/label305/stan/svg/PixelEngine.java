@@ -0,0 +1,186 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Util for recoloring the pixels of ARGB_8888 bitmaps, and for extracting their masks into ALPHA_8 bitmaps.
+ * <p/>
+ * Pixels are read into a row-major int array with one bulk read, processed, and written back with one bulk write.
+ * Large bitmaps are split into bands of rows which are processed in parallel.
+ */
+final class PixelEngine {
+
+    /**
+     * Bitmaps with fewer pixels than this are processed on the calling thread only.
+     */
+    private static final int PARALLEL_THRESHOLD = 128 * 128;
+
+    private static final int BAND_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final Executor BAND_EXECUTOR = Executors.newFixedThreadPool(Math.max(1, BAND_COUNT - 1), new BandThreadFactory());
+
+    private PixelEngine() {
+    }
+
+    /**
+     * Sets every non-transparent pixel of given bitmap to given color.
+     *
+     * @return the same bitmap.
+     */
+    @NotNull
+    static Bitmap convertImageColor(@NotNull final Bitmap image, final int color) {
+        process(image, color, false);
+        return image;
+    }
+
+    /**
+     * Sets every transparent pixel of given bitmap to given color, and every other pixel to transparent.
+     *
+     * @return the same bitmap.
+     */
+    @NotNull
+    static Bitmap invertImage(@NotNull final Bitmap image, final int color) {
+        process(image, color, true);
+        return image;
+    }
+
+    /**
+     * Writes the mask of given ARGB_8888 image into given ALPHA_8 bitmap of the same size.
+     * The mask is opaque where the image is not transparent, or where it is transparent if inverted, and transparent elsewhere.
+     */
+    static void extractMask(@NotNull final Bitmap image, final boolean invert, @NotNull final Bitmap mask) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = readProcessed(image, Color.WHITE, invert);
+
+        int rowBytes = mask.getRowBytes();
+        byte[] alphas = new byte[rowBytes * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                alphas[y * rowBytes + x] = (byte) Color.alpha(pixels[y * width + x]);
+            }
+        }
+        mask.copyPixelsFromBuffer(ByteBuffer.wrap(alphas));
+    }
+
+    private static void process(@NotNull final Bitmap image, final int color, final boolean invert) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = readProcessed(image, color, invert);
+        image.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    /**
+     * Returns the pixels of given image, recolored.
+     */
+    @NotNull
+    private static int[] readProcessed(@NotNull final Bitmap image, final int color, final boolean invert) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = new int[width * height];
+        image.getPixels(pixels, 0, width, 0, 0, width, height);
+
+        if (pixels.length < PARALLEL_THRESHOLD || BAND_COUNT == 1) {
+            processRange(pixels, 0, pixels.length, color, invert);
+        } else {
+            processParallel(pixels, width, height, color, invert);
+        }
+        return pixels;
+    }
+
+    private static void processParallel(@NotNull final int[] pixels, final int width, final int height, final int color, final boolean invert) {
+        int rowsPerBand = (height + BAND_COUNT - 1) / BAND_COUNT;
+        int bandCount = (height + rowsPerBand - 1) / rowsPerBand;
+        CountDownLatch latch = new CountDownLatch(bandCount - 1);
+
+        /* The first band is processed on the calling thread */
+        for (int band = 1; band < bandCount; band++) {
+            int start = band * rowsPerBand * width;
+            int end = Math.min(height, (band + 1) * rowsPerBand) * width;
+            BAND_EXECUTOR.execute(new BandRunnable(pixels, start, end, color, invert, latch));
+        }
+        processRange(pixels, 0, rowsPerBand * width, color, invert);
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException ignored) {
+                /* The bands must finish before the pixels are written back */
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void processRange(@NotNull final int[] pixels, final int start, final int end, final int color, final boolean invert) {
+        if (invert) {
+            for (int i = start; i < end; i++) {
+                pixels[i] = pixels[i] == Color.TRANSPARENT ? color : Color.TRANSPARENT;
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                if (pixels[i] != Color.TRANSPARENT) {
+                    pixels[i] = color;
+                }
+            }
+        }
+    }
+
+    private static class BandRunnable implements Runnable {
+
+        @NotNull
+        private final int[] mPixels;
+
+        private final int mStart;
+
+        private final int mEnd;
+
+        private final int mColor;
+
+        private final boolean mInvert;
+
+        @NotNull
+        private final CountDownLatch mLatch;
+
+        BandRunnable(@NotNull final int[] pixels, final int start, final int end, final int color, final boolean invert, @NotNull final CountDownLatch latch) {
+            mPixels = pixels;
+            mStart = start;
+            mEnd = end;
+            mColor = color;
+            mInvert = invert;
+            mLatch = latch;
+        }
+
+        @Override
+        public void run() {
+            try {
+                processRange(mPixels, mStart, mEnd, mColor, mInvert);
+            } finally {
+                mLatch.countDown();
+            }
+        }
+    }
+
+    private static class BandThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(@NotNull final Runnable runnable) {
+            Thread thread = new Thread(runnable, "PixelEngine");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link BitmapCodec} which writes the pixel memory of ARGB_8888 and ALPHA_8 bitmaps uncompressed.
+ * <p/>
+ * Files are memory-mapped when read, and copied into a bitmap from the {@link BitmapPool} without a decode step.
+ * They take more disk space than compressed formats, so this codec is best suited for small bitmaps.
+ */
+class RawBitmapCodec implements BitmapCodec {
+
+    static final String ID = "raw";
+
+    private static final int MAGIC = 0x53524157;
+
+    private static final int CONFIG_ARGB_8888 = 1;
+
+    private static final int CONFIG_ALPHA_8 = 2;
+
+    /**
+     * Magic, width, height and config.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    @NotNull
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public boolean canEncode(@NotNull final Bitmap bitmap) {
+        return bitmap.getConfig() == Bitmap.Config.ARGB_8888 || bitmap.getConfig() == Bitmap.Config.ALPHA_8;
+    }
+
+    @Override
+    public void encode(@NotNull final Bitmap bitmap, @NotNull final File file) throws IOException {
+        int byteCount = bitmap.getRowBytes() * bitmap.getHeight();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(HEADER_SIZE + byteCount);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + byteCount);
+            buffer.putInt(MAGIC);
+            buffer.putInt(bitmap.getWidth());
+            buffer.putInt(bitmap.getHeight());
+            buffer.putInt(bitmap.getConfig() == Bitmap.Config.ALPHA_8 ? CONFIG_ALPHA_8 : CONFIG_ARGB_8888);
+            bitmap.copyPixelsToBuffer(buffer);
+            buffer.force();
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Bitmap decode(@NotNull final File file) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileChannel channel = inputStream.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                return null;
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            Bitmap.Config config = buffer.getInt() == CONFIG_ALPHA_8 ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888;
+            if (width <= 0 || height <= 0) {
+                return null;
+            }
+
+            Bitmap result = BitmapPool.getInstance().getUnused(width, height, config);
+            if (result == null) {
+                result = Bitmap.createBitmap(width, height, config);
+            }
+            if (buffer.remaining() < result.getRowBytes() * height) {
+                return null;
+            }
+            result.copyPixelsFromBuffer(buffer);
+            return result;
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.label305.stan.svg;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An Svg which is ready to be rendered, either parsed from XML or read from its compiled form.
+ */
+interface RenderableSvg {
+
+    /**
+     * Renders the Svg onto given canvas, scaled to fit the canvas.
+     */
+    void renderToCanvas(@NotNull Canvas canvas);
+
+    /**
+     * Renders the Svg onto given canvas, scaled to fit the viewport from (0, 0) to given size rather than the canvas.
+     * Used to render a part of the Svg into a canvas which is smaller than the viewport, such as a tile.
+     */
+    void renderToCanvas(@NotNull Canvas canvas, int viewportWidth, int viewportHeight);
+
+    /**
+     * Renders the Svg into a Picture of its own document size.
+     */
+    @NotNull
+    Picture renderToPicture();
+
+    /**
+     * Renders the Svg into a Picture of given size, scaled to fit.
+     */
+    @NotNull
+    Picture renderToPicture(int width, int height);
+}
@@ -0,0 +1,65 @@
+package com.label305.stan.svg;
+
+import android.content.Context;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Chooses the size at which an {@link SvgImageView} renders its Svg, so views of slightly different sizes share one cached rendering.
+ * The rendering is scaled down into the bounds of the view, which costs some memory and sharpness, but saves rendering.
+ *
+ * @see SvgImageView#setSizeBucketPolicy(SizeBucketPolicy)
+ */
+public abstract class SizeBucketPolicy {
+
+    /**
+     * Renders at the next power of the square root of 2, so a rendering is at most 41% larger than the view in each direction.
+     */
+    public static final SizeBucketPolicy POWERS_OF_SQRT_2 = new SizeBucketPolicy() {
+        @Override
+        public int getBucketSize(final int size) {
+            /* The tolerance keeps exact powers in their own bucket despite rounding errors */
+            double exponent = Math.ceil(2 * Math.log(size) / Math.log(2) - 1.0e-9) / 2;
+            return Math.max(size, (int) Math.ceil(Math.pow(2, exponent)));
+        }
+    };
+
+    /**
+     * Returns the bucket size for given size.
+     *
+     * @param size the width or height of a view in pixels, larger than 0.
+     *
+     * @return the size to render at, at least given size.
+     */
+    public abstract int getBucketSize(int size);
+
+    /**
+     * Returns a policy which renders at the next multiple of given step.
+     *
+     * @param stepPx the step in pixels.
+     */
+    @NotNull
+    public static SizeBucketPolicy steps(final int stepPx) {
+        if (stepPx < 1) {
+            throw new IllegalArgumentException("stepPx must be at least 1");
+        }
+
+        return new SizeBucketPolicy() {
+            @Override
+            public int getBucketSize(final int size) {
+                return (size + stepPx - 1) / stepPx * stepPx;
+            }
+        };
+    }
+
+    /**
+     * Returns a policy which renders at the next multiple of given step in density-independent pixels.
+     *
+     * @param stepDp the step in dp.
+     */
+    @NotNull
+    public static SizeBucketPolicy dpSteps(@NotNull final Context context, final float stepDp) {
+        float density = context.getResources().getDisplayMetrics().density;
+        return steps(Math.max(1, Math.round(stepDp * density)));
+    }
+}
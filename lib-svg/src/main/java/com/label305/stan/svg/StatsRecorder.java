@@ -0,0 +1,107 @@
+package com.label305.stan.svg;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the statistics of a cache without locking, so recording can stay enabled in production.
+ */
+final class StatsRecorder {
+
+    @NotNull
+    private final AtomicLong mMemoryHitCount = new AtomicLong();
+
+    @NotNull
+    private final AtomicLong mMemoryMissCount = new AtomicLong();
+
+    @NotNull
+    private final AtomicLong mDiskHitCount = new AtomicLong();
+
+    @NotNull
+    private final AtomicLong mDiskMissCount = new AtomicLong();
+
+    @NotNull
+    private final AtomicLongArray mEvictionCounts = new AtomicLongArray(CacheStats.EvictionReason.values().length);
+
+    @NotNull
+    private final AtomicLong mMemorySizeBytes = new AtomicLong();
+
+    /**
+     * The load time bucket counts of every {@link CacheStats.LoadType}, one after the other.
+     */
+    @NotNull
+    private final AtomicLongArray mLoadTimeCounts = new AtomicLongArray(CacheStats.LoadType.values().length * LoadTimeHistogram.BUCKET_COUNT);
+
+    @NotNull
+    private final AtomicLongArray mLoadTimeTotals = new AtomicLongArray(CacheStats.LoadType.values().length);
+
+    void recordMemoryHit() {
+        mMemoryHitCount.incrementAndGet();
+    }
+
+    void recordMemoryMiss() {
+        mMemoryMissCount.incrementAndGet();
+    }
+
+    /**
+     * Records a memory hit if given value is not null, or a miss otherwise.
+     */
+    void recordMemoryLookup(final Object value) {
+        if (value == null) {
+            recordMemoryMiss();
+        } else {
+            recordMemoryHit();
+        }
+    }
+
+    /**
+     * Records a disk hit if given value is not null, or a miss otherwise.
+     */
+    void recordDiskLookup(final Object value) {
+        if (value == null) {
+            mDiskMissCount.incrementAndGet();
+        } else {
+            mDiskHitCount.incrementAndGet();
+        }
+    }
+
+    void recordEviction(@NotNull final CacheStats.EvictionReason reason) {
+        mEvictionCounts.incrementAndGet(reason.ordinal());
+    }
+
+    void addMemorySizeBytes(final long sizeBytes) {
+        mMemorySizeBytes.addAndGet(sizeBytes);
+    }
+
+    void recordLoadTime(@NotNull final CacheStats.LoadType loadType, final long nanos) {
+        mLoadTimeCounts.incrementAndGet(loadType.ordinal() * LoadTimeHistogram.BUCKET_COUNT + LoadTimeHistogram.getBucket(nanos));
+        mLoadTimeTotals.addAndGet(loadType.ordinal(), nanos);
+    }
+
+    /**
+     * Returns a snapshot of the statistics. Counters may change while the snapshot is taken, so it is not atomic as a whole.
+     *
+     * @param diskSizeBytes the disk space the cache uses.
+     */
+    @NotNull
+    CacheStats snapshot(final long diskSizeBytes) {
+        long[] evictionCounts = new long[mEvictionCounts.length()];
+        for (int i = 0; i < evictionCounts.length; i++) {
+            evictionCounts[i] = mEvictionCounts.get(i);
+        }
+
+        LoadTimeHistogram[] loadTimes = new LoadTimeHistogram[mLoadTimeTotals.length()];
+        for (int i = 0; i < loadTimes.length; i++) {
+            long[] bucketCounts = new long[LoadTimeHistogram.BUCKET_COUNT];
+            for (int j = 0; j < bucketCounts.length; j++) {
+                bucketCounts[j] = mLoadTimeCounts.get(i * LoadTimeHistogram.BUCKET_COUNT + j);
+            }
+            loadTimes[i] = new LoadTimeHistogram(bucketCounts, mLoadTimeTotals.get(i));
+        }
+
+        return new CacheStats(mMemoryHitCount.get(), mMemoryMissCount.get(), mDiskHitCount.get(), mDiskMissCount.get(), evictionCounts,
+                mMemorySizeBytes.get(), diskSizeBytes, loadTimes);
+    }
+}
@@ -0,0 +1,72 @@
+package com.label305.stan.svg;
+
+/**
+ * An immutable key of a rendered Svg bitmap in the {@link BitmapCache}, with a cached hash code.
+ * Rendered Svg bitmaps are only kept in the memory cache, so no String key is ever built for them.
+ */
+final class SvgBitmapKey {
+
+    static final int FLAG_INVERT = 1;
+
+    static final int FLAG_CUSTOM_COLOR = 1 << 1;
+
+    /**
+     * The bitmap is the white mask of the Svg, which is tinted at draw time.
+     */
+    static final int FLAG_MASK = 1 << 2;
+
+    private final int mSvgResourceId;
+
+    private final int mWidth;
+
+    private final int mHeight;
+
+    private final int mColor;
+
+    private final int mFlags;
+
+    private final int mHashCode;
+
+    SvgBitmapKey(final int svgResourceId, final int width, final int height, final int color, final int flags) {
+        mSvgResourceId = svgResourceId;
+        mWidth = width;
+        mHeight = height;
+        mColor = color;
+        mFlags = flags;
+
+        int hashCode = svgResourceId;
+        hashCode = 31 * hashCode + width;
+        hashCode = 31 * hashCode + height;
+        hashCode = 31 * hashCode + color;
+        hashCode = 31 * hashCode + flags;
+        mHashCode = hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        SvgBitmapKey that = (SvgBitmapKey) o;
+        return mHashCode == that.mHashCode
+                && mSvgResourceId == that.mSvgResourceId
+                && mWidth == that.mWidth
+                && mHeight == that.mHeight
+                && mColor == that.mColor
+                && mFlags == that.mFlags;
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "svg/" + mSvgResourceId + '/' + mWidth + 'x' + mHeight + '/' + Integer.toHexString(mColor) + '/' + mFlags;
+    }
+}
@@ -19,7 +19,9 @@
 package com.label305.stan.svg;
 
 import android.content.Context;
-import android.support.v4.util.LruCache;
+import android.graphics.Picture;
+import android.os.Process;
+import android.util.SparseBooleanArray;
 
 import com.caverock.androidsvg.SVG;
 import com.caverock.androidsvg.SVGParseException;
@@ -28,18 +30,100 @@ import com.label305.stan.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches parsed Svgs and recorded Pictures.
+ * <p/>
+ * Each Svg resource is parsed at most once at a time: callers asking for a resource that is being loaded wait for that load.
+ * Loads that are not waited for run on a shared loader executor with a bounded number of threads, highest priority first.
+ * <p/>
+ * The caches share their memory budget with the bitmap cache. A parsed Svg is estimated at {@value #SVG_BYTES_PER_SOURCE_BYTE}
+ * bytes per byte of its source, and a Picture is measured by the size of its recorded display list.
+ */
 public class SvgCache {
 
+    public static final int PRIORITY_LOW = -10;
+
+    public static final int PRIORITY_NORMAL = 0;
+
+    public static final int PRIORITY_HIGH = 10;
+
+    private static final int LOADER_THREAD_COUNT = 2;
+
     private static SvgCache sInstance;
 
+    /**
+     * The maximum width or height of a Picture that is cached.
+     */
+    private static final int MAX_PICTURE_SIZE = 0xFFFF;
+
+    /**
+     * The estimated memory a parsed Svg uses per byte of its source, for its document tree of element objects, styles and path data.
+     */
+    private static final int SVG_BYTES_PER_SOURCE_BYTE = 6;
+
+    /**
+     * The estimated memory of a parsed Svg of which the source size is not known.
+     */
+    private static final long DEFAULT_SVG_SIZE_BYTES = 64 * 1024;
+
     @NotNull
-    private final LruCache<Integer, SVG> mCache;
+    private final BudgetedCache<Integer, SVG> mCache;
 
-    private SvgCache() {
-        final int maxMemory = (int) (Runtime.getRuntime().maxMemory() / 1024);
-        final int cacheSize = maxMemory / 8;
+    /**
+     * Recorded Pictures, keyed by {@link #makePictureKey(int, int, int)}.
+     */
+    @NotNull
+    private final BudgetedCache<Long, Picture> mPictureCache;
+
+    /**
+     * Svgs read from their compiled form.
+     */
+    @NotNull
+    private final BudgetedCache<Integer, CompiledSvg> mCompiledCache;
 
-        mCache = new IntegerSVGLruCache(cacheSize);
+    /**
+     * The Svg resources which have no compiled form.
+     */
+    @NotNull
+    private final SparseBooleanArray mNotCompiled = new SparseBooleanArray();
+
+    /**
+     * The loads of Svg resources which are queued or running, by resource id.
+     */
+    @NotNull
+    private final Map<Integer, SvgLoad> mInFlight = new HashMap<>();
+
+    @NotNull
+    private final ThreadPoolExecutor mLoaderExecutor;
+
+    @NotNull
+    private final AtomicLong mLoadSequence = new AtomicLong();
+
+    @NotNull
+    private final StatsRecorder mStatsRecorder = new StatsRecorder();
+
+    private SvgCache() {
+        MemoryBudget budget = MemoryBudget.getInstance();
+        mCache = new BudgetedCache<>(budget, mStatsRecorder);
+        mPictureCache = new BudgetedCache<>(budget, mStatsRecorder);
+        mCompiledCache = new BudgetedCache<>(budget, mStatsRecorder);
+        mLoaderExecutor = new ThreadPoolExecutor(LOADER_THREAD_COUNT, LOADER_THREAD_COUNT, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new LoaderThreadFactory());
     }
 
     public static SvgCache getInstance() {
@@ -51,62 +135,391 @@ public class SvgCache {
         }
     }
 
-    public void addSvgToCache(final int key, final SVG svg) {
-        mCache.put(key, svg);
+    public void addSvgToCache(final int key, @NotNull final SVG svg) {
+        mCache.put(key, svg, DEFAULT_SVG_SIZE_BYTES, MemoryBudget.DEFAULT_COST_NANOS);
     }
 
     @Nullable
     public SVG getSvgFromCache(final int key) {
-        return mCache.get(key);
+        SVG result = mCache.get(key);
+        mStatsRecorder.recordMemoryLookup(result);
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the caches of parsed Svgs, compiled Svgs and Pictures together.
+     */
+    @NotNull
+    public CacheStats getStats() {
+        return mStatsRecorder.snapshot(0);
+    }
+
+    /**
+     * Returns the parsed Svg for given resource, parsing it on the calling thread if needed.
+     * If the resource is already being parsed, waits for that parse instead of parsing it again.
+     *
+     * @return the Svg, or null if it could not be parsed.
+     */
+    @Nullable
+    public SVG getSvg(@NotNull final Context context, final int svgResourceId) {
+        MemoryTrimmer.getInstance().register(context);
+        SVG result = getSvgFromCache(svgResourceId);
+        if (result != null) {
+            return result;
+        }
+
+        SvgLoad load;
+        do {
+            load = getOrCreateLoad(context, svgResourceId, PRIORITY_HIGH, false, false);
+            /* Runs the load here, unless a loader thread already started it */
+            load.run();
+            result = load.await();
+            /* A prefetch we joined may have found the compiled form instead of parsing, so parse it ourselves then */
+        } while (result == null && load.mCompiledFirst);
+        return result;
+    }
+
+    /**
+     * Loads and caches given Svg resources on the loader executor. Resources with a higher priority are loaded first.
+     * Resources which are already cached or being loaded are not loaded again, but their priority is raised if given priority is higher.
+     * Resources with a compiled form are read in that form instead of parsed. Nothing is read on the calling thread.
+     *
+     * @param priority     the priority, such as {@link #PRIORITY_NORMAL}.
+     * @param svgResources the resource id's of the svg's to cache.
+     */
+    public void prefetch(@NotNull final Context context, final int priority, @NotNull final int... svgResources) {
+        MemoryTrimmer.getInstance().register(context);
+        for (int svgResourceId : svgResources) {
+            if (mCache.get(svgResourceId) == null && mCompiledCache.get(svgResourceId) == null) {
+                getOrCreateLoad(context, svgResourceId, priority, true, true);
+            }
+        }
+    }
+
+    /**
+     * Returns given Svg resource ready to be rendered: its compiled form if there is one, or the Svg parsed from XML otherwise.
+     *
+     * @return the Svg, or null if it could not be parsed.
+     */
+    @Nullable
+    RenderableSvg getRenderableSvg(@NotNull final Context context, final int svgResourceId) {
+        MemoryTrimmer.getInstance().register(context);
+        CompiledSvg compiledSvg = getCompiledSvg(context, svgResourceId);
+        if (compiledSvg != null) {
+            return compiledSvg;
+        }
+
+        SVG svg = getSvg(context, svgResourceId);
+        return svg == null ? null : new XmlSvg(svg);
+    }
+
+    /**
+     * Returns the compiled form of given Svg resource, reading it if needed.
+     *
+     * @return the CompiledSvg, or null if the resource has no usable compiled form.
+     */
+    @Nullable
+    private CompiledSvg getCompiledSvg(@NotNull final Context context, final int svgResourceId) {
+        CompiledSvg result = mCompiledCache.get(svgResourceId);
+        if (result != null) {
+            mStatsRecorder.recordMemoryHit();
+            return result;
+        }
+        synchronized (mNotCompiled) {
+            if (mNotCompiled.get(svgResourceId)) {
+                return null;
+            }
+        }
+        mStatsRecorder.recordMemoryMiss();
+
+        long startNanos = System.nanoTime();
+        try {
+            result = CompiledSvg.load(context, svgResourceId);
+        } catch (IOException e) {
+            Logger.log(e);
+        }
+
+        if (result == null) {
+            synchronized (mNotCompiled) {
+                mNotCompiled.put(svgResourceId, true);
+            }
+        } else {
+            long costNanos = System.nanoTime() - startNanos;
+            mStatsRecorder.recordLoadTime(CacheStats.LoadType.COMPILED_SVG_LOAD, costNanos);
+            mCompiledCache.put(svgResourceId, result, result.getFootprintBytes(), costNanos);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the load of given Svg resource that is in flight, or creates one.
+     *
+     * @param enqueue       whether a created load should be queued on the loader executor.
+     * @param compiledFirst whether a created load should read the compiled form instead of parsing, if there is one.
+     */
+    @NotNull
+    private SvgLoad getOrCreateLoad(@NotNull final Context context, final int svgResourceId, final int priority, final boolean enqueue,
+                                    final boolean compiledFirst) {
+        synchronized (mInFlight) {
+            SvgLoad load = mInFlight.get(svgResourceId);
+            if (load == null) {
+                load = new SvgLoad(context.getApplicationContext(), svgResourceId, priority, mLoadSequence.getAndIncrement(), compiledFirst);
+                mInFlight.put(svgResourceId, load);
+                if (enqueue) {
+                    mLoaderExecutor.execute(load);
+                }
+            } else if (priority > load.mPriority && mLoaderExecutor.remove(load)) {
+                /* Still queued, so queue it again at the higher priority */
+                load.mPriority = priority;
+                mLoaderExecutor.execute(load);
+            }
+            return load;
+        }
     }
 
+    /**
+     * Returns the Picture recorded for given Svg resource at given size, if cached.
+     * A width and height of 0 denote the Svg's own document size.
+     */
+    @Nullable
+    public Picture getPictureFromCache(final int svgResourceId, final int width, final int height) {
+        if (width > MAX_PICTURE_SIZE || height > MAX_PICTURE_SIZE) {
+            return null;
+        }
+        Picture result = mPictureCache.get(makePictureKey(svgResourceId, width, height));
+        mStatsRecorder.recordMemoryLookup(result);
+        return result;
+    }
+
+    /**
+     * Caches the Picture recorded for given Svg resource at given size.
+     * A width and height of 0 denote the Svg's own document size.
+     */
+    public void addPictureToCache(final int svgResourceId, final int width, final int height, @NotNull final Picture picture) {
+        putPicture(svgResourceId, width, height, picture, MemoryBudget.DEFAULT_COST_NANOS);
+    }
 
     /**
-     * Starts a new thread for retrieving and caching given svg resources.
+     * @param costNanos the time it took to record the Picture.
+     */
+    void addPictureToCache(final int svgResourceId, final int width, final int height, @NotNull final Picture picture, final long costNanos) {
+        mStatsRecorder.recordLoadTime(CacheStats.LoadType.PICTURE_RECORD, costNanos);
+        putPicture(svgResourceId, width, height, picture, costNanos);
+    }
+
+    private void putPicture(final int svgResourceId, final int width, final int height, @NotNull final Picture picture, final long costNanos) {
+        if (width <= MAX_PICTURE_SIZE && height <= MAX_PICTURE_SIZE) {
+            mPictureCache.put(makePictureKey(svgResourceId, width, height), picture, getSizeBytes(picture), costNanos);
+        }
+    }
+
+    /**
+     * Returns the size of the recorded display list in bytes, measured by serializing it once.
+     */
+    @SuppressWarnings("deprecation")
+    private static long getSizeBytes(@NotNull final Picture picture) {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        picture.writeToStream(outputStream);
+        return outputStream.mCount;
+    }
+
+    private static long makePictureKey(final int svgResourceId, final int width, final int height) {
+        return (long) svgResourceId << 32 | (long) width << 16 | height;
+    }
+
+    /**
+     * Retrieves and caches given svg resources in the background.
      *
      * @param context      the context
      * @param svgResources the resource id's of the svg's to cache.
+     *
+     * @see #prefetch(Context, int, int...)
      */
     public void asyncCache(@NotNull final Context context, @NotNull final int... svgResources) {
-        AsyncCacheRunnable runnable = new AsyncCacheRunnable(context, svgResources);
-        new Thread(runnable).start();
+        prefetch(context, PRIORITY_NORMAL, svgResources);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private int mCount;
+
+        @Override
+        public void write(final int oneByte) throws IOException {
+            mCount++;
+        }
+
+        @Override
+        public void write(@NotNull final byte[] buffer, final int offset, final int count) throws IOException {
+            mCount += count;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long mCount;
+
+        CountingInputStream(@NotNull final InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result != -1) {
+                mCount++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(@NotNull final byte[] buffer, final int offset, final int count) throws IOException {
+            int result = super.read(buffer, offset, count);
+            if (result > 0) {
+                mCount += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            long result = super.skip(count);
+            mCount += result;
+            return result;
+        }
     }
 
-    private static class IntegerSVGLruCache extends LruCache<Integer, SVG> {
+    /**
+     * A load of one Svg resource, which runs at most once and can be waited for by any number of callers.
+     */
+    private class SvgLoad extends FutureTask<SVG> implements Comparable<SvgLoad> {
+
+        private final int mSvgResourceId;
 
-        IntegerSVGLruCache(final int cacheSize) {
-            super(cacheSize);
+        private final long mSequence;
+
+        /**
+         * Whether the load reads the compiled form instead of parsing, if there is one. It then results in null.
+         */
+        private final boolean mCompiledFirst;
+
+        /**
+         * Only changed while not queued, so the order of the queue stays valid.
+         */
+        private volatile int mPriority;
+
+        SvgLoad(@NotNull final Context context, final int svgResourceId, final int priority, final long sequence, final boolean compiledFirst) {
+            super(new SvgParseCallable(context, svgResourceId, compiledFirst));
+            mSvgResourceId = svgResourceId;
+            mPriority = priority;
+            mSequence = sequence;
+            mCompiledFirst = compiledFirst;
         }
 
         @Override
-        protected int sizeOf(final Integer key, @NotNull final SVG value) {
-            return value.toString().length();
+        protected void done() {
+            synchronized (mInFlight) {
+                mInFlight.remove(mSvgResourceId);
+            }
+        }
+
+        @Nullable
+        SVG await() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return get();
+                    } catch (InterruptedException ignored) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                Logger.log(e);
+                return null;
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(@NotNull final SvgLoad another) {
+            if (mPriority != another.mPriority) {
+                return mPriority > another.mPriority ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : mSequence == another.mSequence ? 0 : 1;
         }
     }
 
-    private class AsyncCacheRunnable implements Runnable {
+    private class SvgParseCallable implements Callable<SVG> {
 
         @NotNull
         private final Context mContext;
 
-        @NotNull
-        private final int[] mSvgResources;
+        private final int mSvgResourceId;
+
+        private final boolean mCompiledFirst;
 
-        AsyncCacheRunnable(@NotNull final Context context, @NotNull final int... svgResources) {
+        SvgParseCallable(@NotNull final Context context, final int svgResourceId, final boolean compiledFirst) {
             mContext = context;
-            mSvgResources = svgResources;
+            mSvgResourceId = svgResourceId;
+            mCompiledFirst = compiledFirst;
         }
 
+        @Nullable
         @Override
-        public void run() {
+        public SVG call() {
+            if (mCompiledFirst && getCompiledSvg(mContext, mSvgResourceId) != null) {
+                return null;
+            }
+
+            long startNanos = System.nanoTime();
+            CountingInputStream inputStream = new CountingInputStream(mContext.getResources().openRawResource(mSvgResourceId));
             try {
-                for (int resource : mSvgResources) {
-                    SVG item = SVG.getFromResource(mContext, resource);
-                    addSvgToCache(resource, item);
-                }
+                SVG result = SVG.getFromInputStream(inputStream);
+                long costNanos = System.nanoTime() - startNanos;
+                mStatsRecorder.recordLoadTime(CacheStats.LoadType.SVG_PARSE, costNanos);
+                mCache.put(mSvgResourceId, result, inputStream.mCount * SVG_BYTES_PER_SOURCE_BYTE, costNanos);
+                return result;
             } catch (SVGParseException e) {
                 Logger.log(e);
+                return null;
+            } finally {
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {
+                }
             }
         }
     }
+
+    private static class LoaderThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(@NotNull final Runnable runnable) {
+            Thread thread = new Thread(new BackgroundPriorityRunnable(runnable), "SvgCache");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Runs given runnable at background thread priority, so it does not slow down the main thread.
+     */
+    static class BackgroundPriorityRunnable implements Runnable {
+
+        @NotNull
+        private final Runnable mRunnable;
+
+        BackgroundPriorityRunnable(@NotNull final Runnable runnable) {
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            mRunnable.run();
+        }
+    }
 }
@@ -21,23 +21,39 @@ package com.label305.stan.svg;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.graphics.drawable.PictureDrawable;
-import android.graphics.drawable.StateListDrawable;
 import android.os.Build;
 import android.util.AttributeSet;
+import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 
-import com.caverock.androidsvg.SVG;
-import com.caverock.androidsvg.SVGParseException;
+import com.label305.stan.async.OwnerCallbacks;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * An ImageView which shows an Svg resource.
+ * <p/>
+ * Changing a property does not render the Svg right away. The Svg is rendered once, with the final properties,
+ * when the view is laid out or about to be drawn, or when {@link #getDrawable()} is called.
+ */
 public class SvgImageView extends ImageView {
 
+    /**
+     * The first API level at which hardware accelerated canvases can draw Pictures.
+     */
+    static final int PICTURE_HARDWARE_API_LEVEL = 23;
+
+    /**
+     * The values of the sizeBuckets attribute.
+     */
+    private static final int SIZE_BUCKETS_EXACT = 0;
+
+    private static final int SIZE_BUCKETS_SQRT_2 = 1;
+
     private int mSvgResourceId;
 
     private boolean mInvertSvg;
@@ -50,6 +66,46 @@ public class SvgImageView extends ImageView {
 
     private boolean mCustomColorSet;
 
+    private boolean mTintAtDrawTime;
+
+    private boolean mAsyncRendering;
+
+    private boolean mTiledRendering;
+
+    @Nullable
+    private Drawable mPlaceholder;
+
+    @Nullable
+    private SizeBucketPolicy mSizeBucketPolicy;
+
+    /**
+     * The spec of the image shown or being rendered.
+     */
+    @Nullable
+    private SvgRenderSpec mRequestedSpec;
+
+    @Nullable
+    private SvgRenderTask mRenderTask;
+
+    /**
+     * The rendered Drawable shown, whose bitmaps are acquired from the {@link BitmapPool} so they are not reused while shown.
+     */
+    @Nullable
+    private Drawable mShownDrawable;
+
+    /**
+     * Whether we have set a software layer, because the shown Drawable can't be drawn with hardware acceleration.
+     */
+    private boolean mUsesSoftwareLayer;
+
+    /**
+     * Whether a property changed since the image was last shown.
+     */
+    private boolean mRenderDirty;
+
+    @NotNull
+    private final ViewTreeObserver.OnPreDrawListener mPreDrawListener = new UpdateOnPreDrawListener();
+
     public SvgImageView(final Context context) {
         super(context);
     }
@@ -73,6 +129,12 @@ public class SvgImageView extends ImageView {
         mPressedSvgColor = a.getColor(R.styleable.SvgImageView_pressedSvgColor, Color.WHITE);
         mIsPressable = a.hasValue(R.styleable.SvgImageView_pressedSvgColor);
         mSvgResourceId = a.getResourceId(R.styleable.SvgImageView_svg, 0);
+        mTintAtDrawTime = a.getBoolean(R.styleable.SvgImageView_tintAtDrawTime, false);
+        mAsyncRendering = a.getBoolean(R.styleable.SvgImageView_asyncRendering, false);
+        mTiledRendering = a.getBoolean(R.styleable.SvgImageView_tiledRendering, false);
+        if (a.getInt(R.styleable.SvgImageView_sizeBuckets, SIZE_BUCKETS_EXACT) == SIZE_BUCKETS_SQRT_2) {
+            mSizeBucketPolicy = SizeBucketPolicy.POWERS_OF_SQRT_2;
+        }
 
         a.recycle();
     }
@@ -82,7 +144,7 @@ public class SvgImageView extends ImageView {
      */
     public void doInvertSvg() {
         mInvertSvg = true;
-        showSvgImage();
+        invalidateSvgImage();
     }
 
     /**
@@ -90,7 +152,7 @@ public class SvgImageView extends ImageView {
      */
     public void doNotInvertSvg() {
         mInvertSvg = false;
-        showSvgImage();
+        invalidateSvgImage();
     }
 
     /**
@@ -99,7 +161,7 @@ public class SvgImageView extends ImageView {
     public void setSvgColor(final int svgColor) {
         mSvgColor = svgColor;
         mCustomColorSet = true;
-        showSvgImage();
+        invalidateSvgImage();
     }
 
     /**
@@ -107,7 +169,7 @@ public class SvgImageView extends ImageView {
      */
     public void useDefaultColor() {
         mCustomColorSet = false;
-        showSvgImage();
+        invalidateSvgImage();
     }
 
     /**
@@ -119,7 +181,7 @@ public class SvgImageView extends ImageView {
         if (mPressedSvgColor == mSvgColor) {
             setIsNotPressable();
         }
-        showSvgImage();
+        invalidateSvgImage();
     }
 
     /**
@@ -127,7 +189,7 @@ public class SvgImageView extends ImageView {
      */
     public void setIsPressable() {
         mIsPressable = true;
-        showSvgImage();
+        invalidateSvgImage();
     }
 
     /**
@@ -135,7 +197,7 @@ public class SvgImageView extends ImageView {
      */
     public void setIsNotPressable() {
         mIsPressable = false;
-        showSvgImage();
+        invalidateSvgImage();
     }
 
     /**
@@ -145,144 +207,267 @@ public class SvgImageView extends ImageView {
      */
     public void setSvgResource(final int resourceId) {
         mSvgResourceId = resourceId;
-        showSvgImage();
+        invalidateSvgImage();
+    }
+
+    /**
+     * Sets whether the Svg color and pressed color should be applied at draw time.
+     * When enabled, one rendering of the Svg is shared for every color and pressed color at a given size,
+     * instead of rendering a separate bitmap for each color.
+     */
+    public void setTintAtDrawTime(final boolean tintAtDrawTime) {
+        mTintAtDrawTime = tintAtDrawTime;
+        invalidateSvgImage();
+    }
+
+    /**
+     * Sets whether the Svg should be rendered on a background thread.
+     * When enabled, a cached image or the placeholder is shown immediately, and the rendered image is shown when it is ready.
+     * Rendering is cancelled when the view is bound to another Svg, or detached from its window.
+     */
+    public void setAsyncRendering(final boolean asyncRendering) {
+        mAsyncRendering = asyncRendering;
+        invalidateSvgImage();
+    }
+
+    /**
+     * Sets whether the Svg should be rasterized in tiles, in parallel on background threads, for large Svgs.
+     * Only the tiles in the visible part of the view are rendered, which saves time and memory for zoomed or scrolled content,
+     * and tiles which are not visible are freed under memory pressure. Tiles are not cached, and are drawn as soon as they are ready.
+     * Does not apply to pressable Svgs, or when tinting at draw time.
+     */
+    public void setTiledRendering(final boolean tiledRendering) {
+        mTiledRendering = tiledRendering;
+        invalidateSvgImage();
+    }
+
+    /**
+     * Sets the Drawable to show while the Svg is being rendered asynchronously.
+     *
+     * @see #setAsyncRendering(boolean)
+     */
+    public void setPlaceholder(@Nullable final Drawable placeholder) {
+        mPlaceholder = placeholder;
+    }
+
+    /**
+     * Sets the policy which chooses the size at which the Svg is rendered, so views of slightly different sizes share one cached rendering.
+     * The rendering keeps the aspect ratio of the view, and is scaled into the view, unless the scale type is CENTER or MATRIX.
+     * Defaults to null, which renders at the exact size of the view.
+     *
+     * @see SizeBucketPolicy#POWERS_OF_SQRT_2
+     */
+    public void setSizeBucketPolicy(@Nullable final SizeBucketPolicy sizeBucketPolicy) {
+        mSizeBucketPolicy = sizeBucketPolicy;
+        invalidateSvgImage();
+    }
+
+    /**
+     * Draws the view in a software layer if given Drawable can't be drawn with hardware acceleration,
+     * and removes the software layer we set earlier otherwise.
+     * Bitmaps are supported by the hardware renderer, Pictures only as of API 23.
+     */
+    private void updateLayerType(@Nullable final Drawable drawable) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+
+        boolean needsSoftwareLayer = drawable instanceof PictureDrawable && Build.VERSION.SDK_INT < PICTURE_HARDWARE_API_LEVEL;
+        if (needsSoftwareLayer != mUsesSoftwareLayer) {
+            mUsesSoftwareLayer = needsSoftwareLayer;
+            setLayerTypeCompat(needsSoftwareLayer ? LAYER_TYPE_SOFTWARE : LAYER_TYPE_NONE);
+        }
     }
 
     @TargetApi(11)
-    private void setSoftwareLayerType() {
-        setLayerType(LAYER_TYPE_SOFTWARE, null);
+    private void setLayerTypeCompat(final int layerType) {
+        setLayerType(layerType, null);
+    }
+
+    /**
+     * Returns the Drawable shown, rendering the Svg first if a property changed since it was last rendered.
+     */
+    @Override
+    public Drawable getDrawable() {
+        updateSvgImage();
+        return super.getDrawable();
+    }
+
+    /**
+     * Marks the image as out of date, so it is rendered before the view is drawn again.
+     */
+    private void invalidateSvgImage() {
+        mRenderDirty = true;
+        invalidate();
     }
 
-    private void showSvgImage() {
-        showSvgImage(getWidth(), getHeight());
+    /**
+     * Shows the image for the current properties, if a property changed since it was last shown.
+     */
+    private void updateSvgImage() {
+        if (mRenderDirty) {
+            showSvgImage(getWidth(), getHeight());
+        }
     }
 
     private void showSvgImage(final int width, final int height) {
+        mRenderDirty = false;
         if (mSvgResourceId == 0) {
+            cancelRenderTask();
+            releaseShownBitmaps();
+            updateLayerType(null);
             setImageResource(0);
-        } else {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-                setSoftwareLayerType();
-            }
-            if (mIsPressable) {
-                showPressableSvgImage(width, height);
-            } else {
-                if (mInvertSvg || mCustomColorSet) {
-                    setImageBitmap(getImageBitmap(width, height));
-                } else {
-                    SVG svg = getSvgImage(mSvgResourceId);
-                    setImageDrawable(new PictureDrawable(svg.renderToPicture()));
-                }
-            }
+            return;
         }
-    }
 
-    @Nullable
-    private SVG getSvgImage(final int svgResourceId) {
-        SVG svg = SvgCache.getInstance().getSvgFromCache(svgResourceId);
-        if (svg == null) {
-            try {
-                svg = SVG.getFromResource(getContext(), svgResourceId);
-            } catch (SVGParseException e) {
-                e.printStackTrace();
-            }
-            SvgCache.getInstance().asyncCache(getContext(), svgResourceId);
+        int renderWidth = width;
+        int renderHeight = height;
+        if (mSizeBucketPolicy != null && width > 0 && height > 0 && getScaleType() != ScaleType.CENTER && getScaleType() != ScaleType.MATRIX) {
+            /* Scale both sides alike, so the rendering keeps the aspect ratio of the view */
+            int largest = Math.max(width, height);
+            float scale = (float) mSizeBucketPolicy.getBucketSize(largest) / largest;
+            renderWidth = Math.max(1, Math.round(width * scale));
+            renderHeight = Math.max(1, Math.round(height * scale));
         }
-        return svg;
-    }
 
-    private void showPressableSvgImage(final int width, final int height) {
-        StateListDrawable states = new StateListDrawable();
-        states.addState(new int[]{android.R.attr.state_pressed}, new BitmapDrawable(getResources(), getPressedImageBitmap(width, height)));
-        states.addState(new int[]{}, new BitmapDrawable(getResources(), getImageBitmap(width, height)));
-        setImageDrawable(states);
-    }
-
-    private Bitmap getImageBitmap(final int width, final int height) {
+        SvgRenderSpec spec = new SvgRenderSpec(mSvgResourceId, renderWidth, renderHeight, mSvgColor, mPressedSvgColor, mInvertSvg, mCustomColorSet, mIsPressable, mTintAtDrawTime,
+                mTiledRendering);
+        if (spec.equals(mRequestedSpec)) {
+            /* Already shown or being rendered */
+            return;
+        }
 
-        Bitmap image = BitmapCache.getInstance(getContext()).getBitmapFromCache(getSvgCacheTag());
+        if (mAsyncRendering) {
+            showSvgImageAsync(spec, renderWidth, renderHeight);
+        } else {
+            cancelRenderTask();
+            showRenderedDrawable(spec.render(getContext()));
+            mRequestedSpec = spec;
+        }
+    }
 
-        if (image == null && width > 0 && height > 0) {
-            SVG svg = getSvgImage(mSvgResourceId);
+    private void showSvgImageAsync(@NotNull final SvgRenderSpec spec, final int width, final int height) {
+        cancelRenderTask();
+        Drawable cached = spec.renderFromMemory(getContext());
+        if (cached != null) {
+            mRequestedSpec = spec;
+            showRenderedDrawable(cached);
+        } else if (width > 0 && height > 0) {
+            mRequestedSpec = spec;
+            showPlaceholder();
+            mRenderTask = new SvgRenderTask(getContext(), spec);
+            mRenderTask.bindTo(this, new ApplyRenderCallbacks(spec, mRenderTask));
+            mRenderTask.execute();
+        } else {
+            /* We'll render once we have been laid out */
+            showPlaceholder();
+        }
+    }
 
-            image = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(image);
-            // Render our document onto our canvas
-            svg.renderToCanvas(canvas);
-            if (mInvertSvg) {
-                Bitmap invertedBitmap = invertImage(image, mSvgColor);
-                image = convertImageColor(invertedBitmap, mSvgColor);
-            } else {
-                image = convertImageColor(image, mSvgColor);
-            }
-            BitmapCache.getInstance(getContext()).addBitmapToCache(getSvgCacheTag(), image);
+    private void onRenderFinished(@NotNull final SvgRenderSpec spec, @Nullable final Drawable drawable) {
+        if (spec.equals(mRequestedSpec)) {
+            mRenderTask = null;
+            showRenderedDrawable(drawable);
+        } else {
+            SvgRenderSpec.releaseBitmaps(drawable);
         }
+    }
 
-        return image;
+    private void showPlaceholder() {
+        releaseShownBitmaps();
+        updateLayerType(mPlaceholder);
+        setImageDrawable(mPlaceholder);
     }
 
-    private Bitmap getPressedImageBitmap(final int width, final int height) {
+    /**
+     * Shows given Drawable rendered by a {@link SvgRenderSpec}, taking over its acquired bitmaps.
+     */
+    private void showRenderedDrawable(@Nullable final Drawable drawable) {
+        releaseShownBitmaps();
+        mShownDrawable = drawable;
+        updateLayerType(drawable);
+        setImageDrawable(drawable);
+    }
 
-        Bitmap image = BitmapCache.getInstance(getContext()).getBitmapFromCache(getPressedSvgCacheTag());
+    private void releaseShownBitmaps() {
+        SvgRenderSpec.releaseBitmaps(mShownDrawable);
+        mShownDrawable = null;
+    }
 
-        if (image == null && width > 0 && height > 0) {
-            SVG svg = getSvgImage(mSvgResourceId);
+    /**
+     * Returns the spec of the image shown or being rendered, if any.
+     */
+    @Nullable
+    SvgRenderSpec getRequestedSpec() {
+        return mRequestedSpec;
+    }
 
-            image = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(image);
-            // Render our document onto our canvas
-            svg.renderToCanvas(canvas);
-            if (mInvertSvg) {
-                Bitmap invertedBitmap = invertImage(image, mPressedSvgColor);
-                image = convertImageColor(invertedBitmap, mPressedSvgColor);
-            } else {
-                image = convertImageColor(image, mPressedSvgColor);
-            }
-            BitmapCache.getInstance(getContext()).addBitmapToCache(getPressedSvgCacheTag(), image);
+    private void cancelRenderTask() {
+        if (mRenderTask != null) {
+            mRenderTask.cancel();
+            mRenderTask = null;
         }
-
-        return image;
+        mRequestedSpec = null;
     }
 
     @Override
     protected void onLayout(final boolean changed, final int left, final int top, final int right, final int bottom) {
         super.onLayout(changed, left, top, right, bottom);
 
-        showSvgImage(right - left, bottom - top);
+        if (changed || mRenderDirty) {
+            showSvgImage(right - left, bottom - top);
+        }
     }
 
-    private String getSvgCacheTag() {
-        return mSvgResourceId + getWidth() + "," + getHeight() + String.valueOf(mSvgColor) + mInvertSvg + mCustomColorSet;
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        getViewTreeObserver().addOnPreDrawListener(mPreDrawListener);
+        /* The shown bitmaps were released when we were detached, so show them again */
+        if (mRequestedSpec == null) {
+            invalidateSvgImage();
+        }
     }
 
-    private String getPressedSvgCacheTag() {
-        return mSvgResourceId + getWidth() + "," + getHeight() + String.valueOf(mPressedSvgColor) + mInvertSvg + mCustomColorSet;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        getViewTreeObserver().removeOnPreDrawListener(mPreDrawListener);
+        cancelRenderTask();
+        releaseShownBitmaps();
     }
 
-    private static Bitmap convertImageColor(final Bitmap image, final int invertColor) {
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                /* If the bitmap is in ARGB_8888 format */
-                if (image.getPixel(x, y) != Color.TRANSPARENT) {
-                    image.setPixel(x, y, invertColor);
-                }
-            }
+    private class UpdateOnPreDrawListener implements ViewTreeObserver.OnPreDrawListener {
+
+        @Override
+        public boolean onPreDraw() {
+            updateSvgImage();
+            return true;
         }
-        return image;
-    }
-
-    private static Bitmap invertImage(final Bitmap image, final int invertColor) {
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                /* If the bitmap is in ARGB_8888 format */
-                if (image.getPixel(x, y) == Color.TRANSPARENT) {
-                    image.setPixel(x, y, invertColor);
-                } else {
-                    image.setPixel(x, y, Color.TRANSPARENT);
-                }
-            }
+    }
+
+    /**
+     * Shows the rendered Drawable on the SvgImageView, if it is still attached and still wants it.
+     * A Drawable which is not taken here is released by the {@link SvgRenderTask} when it finishes.
+     */
+    private static class ApplyRenderCallbacks extends OwnerCallbacks<SvgImageView, Drawable> {
+
+        @NotNull
+        private final SvgRenderSpec mSpec;
+
+        @NotNull
+        private final SvgRenderTask mTask;
+
+        ApplyRenderCallbacks(@NotNull final SvgRenderSpec spec, @NotNull final SvgRenderTask task) {
+            mSpec = spec;
+            mTask = task;
         }
 
-        return image;
+        @Override
+        public void onSuccess(@NotNull final SvgImageView owner, @Nullable final Drawable result) {
+            owner.onRenderFinished(mSpec, mTask.takeResult());
+        }
     }
 }
@@ -0,0 +1,95 @@
+package com.label305.stan.svg;
+
+import android.graphics.Color;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Describes the rendering an {@link SvgImageView} will need, so {@link SvgPrefetcher} can render it ahead of time.
+ * The properties should equal those of the view: the same Svg, size, color and inversion.
+ * With a {@link SizeBucketPolicy}, the size is the bucketed size the view renders at.
+ */
+public final class SvgPrefetchRequest {
+
+    @NotNull
+    private final SvgRenderSpec mSpec;
+
+    /**
+     * Describes a view which shows the Svg in its own colors.
+     *
+     * @param width  the width the view renders at, in pixels.
+     * @param height the height the view renders at, in pixels.
+     */
+    public SvgPrefetchRequest(final int svgResourceId, final int width, final int height) {
+        mSpec = new SvgRenderSpec(svgResourceId, width, height, Color.BLACK, Color.WHITE, false, false, false, false, false);
+    }
+
+    /**
+     * Describes a view which shows the Svg in its default color, optionally inverted.
+     *
+     * @param width     the width the view renders at, in pixels.
+     * @param height    the height the view renders at, in pixels.
+     * @param invertSvg whether the view inverts the Svg, see {@link SvgImageView#doInvertSvg()}.
+     */
+    public SvgPrefetchRequest(final int svgResourceId, final int width, final int height, final boolean invertSvg) {
+        this(svgResourceId, width, height, invertSvg, false);
+    }
+
+    /**
+     * Describes a view which shows the Svg in its default color, optionally inverted.
+     *
+     * @param width          the width the view renders at, in pixels.
+     * @param height         the height the view renders at, in pixels.
+     * @param invertSvg      whether the view inverts the Svg, see {@link SvgImageView#doInvertSvg()}.
+     * @param tintAtDrawTime whether the view applies the color at draw time, see {@link SvgImageView#setTintAtDrawTime(boolean)}.
+     */
+    public SvgPrefetchRequest(final int svgResourceId, final int width, final int height, final boolean invertSvg, final boolean tintAtDrawTime) {
+        mSpec = new SvgRenderSpec(svgResourceId, width, height, Color.BLACK, Color.WHITE, invertSvg, false, false, tintAtDrawTime, false);
+    }
+
+    /**
+     * Describes a view which shows the Svg in given color, as set with {@link SvgImageView#setSvgColor(int)}.
+     *
+     * @param width     the width the view renders at, in pixels.
+     * @param height    the height the view renders at, in pixels.
+     * @param invertSvg whether the view inverts the Svg, see {@link SvgImageView#doInvertSvg()}.
+     */
+    public SvgPrefetchRequest(final int svgResourceId, final int width, final int height, final int svgColor, final boolean invertSvg) {
+        this(svgResourceId, width, height, svgColor, invertSvg, false);
+    }
+
+    /**
+     * Describes a view which shows the Svg in given color, as set with {@link SvgImageView#setSvgColor(int)}.
+     *
+     * @param width          the width the view renders at, in pixels.
+     * @param height         the height the view renders at, in pixels.
+     * @param invertSvg      whether the view inverts the Svg, see {@link SvgImageView#doInvertSvg()}.
+     * @param tintAtDrawTime whether the view applies the color at draw time, see {@link SvgImageView#setTintAtDrawTime(boolean)}.
+     */
+    public SvgPrefetchRequest(final int svgResourceId, final int width, final int height, final int svgColor, final boolean invertSvg,
+                              final boolean tintAtDrawTime) {
+        mSpec = new SvgRenderSpec(svgResourceId, width, height, svgColor, Color.WHITE, invertSvg, true, false, tintAtDrawTime, false);
+    }
+
+    @NotNull
+    SvgRenderSpec getSpec() {
+        return mSpec;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        return mSpec.equals(((SvgPrefetchRequest) o).mSpec);
+    }
+
+    @Override
+    public int hashCode() {
+        return mSpec.hashCode();
+    }
+}
@@ -0,0 +1,142 @@
+package com.label305.stan.svg;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Renders the Svgs of upcoming rows of a list ahead of time, so they are cached in {@link SvgCache} and {@link BitmapCache}
+ * by the time their {@link SvgImageView}s are bound.
+ * <p/>
+ * Prefetches are keyed by adapter position. Call {@link #prefetch(int, SvgPrefetchRequest)} for the rows just past the visible ones,
+ * and {@link #cancelOutside(int, int)} when scrolling, so rows which were scrolled past are not rendered anymore.
+ * Prefetches run one at a time on a background priority thread, so they do not hold up the rendering of visible rows.
+ * <p/>
+ * All methods must be called on the main thread.
+ */
+public final class SvgPrefetcher {
+
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newSingleThreadExecutor(new PrefetchThreadFactory());
+
+    @NotNull
+    private final Context mContext;
+
+    /**
+     * The prefetches which may not have finished yet, by adapter position.
+     */
+    @NotNull
+    private final SparseArray<Prefetch> mPrefetches = new SparseArray<>();
+
+    public SvgPrefetcher(@NotNull final Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Renders the Svg described by given request in the background, unless it is cached in memory already.
+     * Replaces the prefetch for given position if it has a different request.
+     *
+     * @param position the adapter position of the row which will show the Svg.
+     */
+    public void prefetch(final int position, @NotNull final SvgPrefetchRequest request) {
+        Prefetch previous = mPrefetches.get(position);
+        if (previous != null && previous.mRequest.equals(request) && !previous.mFuture.isDone()) {
+            return;
+        }
+
+        cancel(position);
+        Drawable cached = request.getSpec().renderFromMemory(mContext);
+        if (cached != null) {
+            SvgRenderSpec.releaseBitmaps(cached);
+            return;
+        }
+
+        mPrefetches.put(position, new Prefetch(request, PREFETCH_EXECUTOR.submit(new PrefetchRunnable(mContext, request.getSpec()))));
+    }
+
+    /**
+     * Cancels the prefetch for given position, if it has not started yet.
+     */
+    public void cancel(final int position) {
+        Prefetch prefetch = mPrefetches.get(position);
+        if (prefetch != null) {
+            prefetch.mFuture.cancel(false);
+            mPrefetches.remove(position);
+        }
+    }
+
+    /**
+     * Cancels the prefetches for positions before given first position or after given last position, such as rows scrolled past.
+     */
+    public void cancelOutside(final int firstPosition, final int lastPosition) {
+        for (int i = mPrefetches.size() - 1; i >= 0; i--) {
+            int position = mPrefetches.keyAt(i);
+            if (position < firstPosition || position > lastPosition || mPrefetches.valueAt(i).mFuture.isDone()) {
+                mPrefetches.valueAt(i).mFuture.cancel(false);
+                mPrefetches.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * Cancels all prefetches which have not started yet, such as when the list is left.
+     */
+    public void cancelAll() {
+        for (int i = 0; i < mPrefetches.size(); i++) {
+            mPrefetches.valueAt(i).mFuture.cancel(false);
+        }
+        mPrefetches.clear();
+    }
+
+    private static class Prefetch {
+
+        @NotNull
+        final SvgPrefetchRequest mRequest;
+
+        @NotNull
+        final Future<?> mFuture;
+
+        Prefetch(@NotNull final SvgPrefetchRequest request, @NotNull final Future<?> future) {
+            mRequest = request;
+            mFuture = future;
+        }
+    }
+
+    /**
+     * Renders a spec for its side effect of caching the rendering, and releases the result right away.
+     */
+    private static class PrefetchRunnable implements Runnable {
+
+        @NotNull
+        private final Context mContext;
+
+        @NotNull
+        private final SvgRenderSpec mSpec;
+
+        PrefetchRunnable(@NotNull final Context context, @NotNull final SvgRenderSpec spec) {
+            mContext = context;
+            mSpec = spec;
+        }
+
+        @Override
+        public void run() {
+            SvgRenderSpec.releaseBitmaps(mSpec.render(mContext));
+        }
+    }
+
+    private static class PrefetchThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(@NotNull final Runnable runnable) {
+            Thread thread = new Thread(new SvgCache.BackgroundPriorityRunnable(runnable), "SvgPrefetcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.label305.stan.svg;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.DrawableContainer;
+import android.graphics.drawable.PictureDrawable;
+import android.graphics.drawable.StateListDrawable;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable description of what an {@link SvgImageView} should show, which knows how to render itself.
+ * Two equal specs render to the same image.
+ */
+final class SvgRenderSpec {
+
+    private final int mSvgResourceId;
+
+    private final int mWidth;
+
+    private final int mHeight;
+
+    private final int mSvgColor;
+
+    private final int mPressedSvgColor;
+
+    private final boolean mInvertSvg;
+
+    private final boolean mCustomColorSet;
+
+    private final boolean mIsPressable;
+
+    private final boolean mTintAtDrawTime;
+
+    private final boolean mTiled;
+
+    private final int mHashCode;
+
+    @SuppressWarnings("ConstructorWithTooManyParameters")
+    SvgRenderSpec(final int svgResourceId, final int width, final int height, final int svgColor, final int pressedSvgColor,
+                  final boolean invertSvg, final boolean customColorSet, final boolean isPressable, final boolean tintAtDrawTime,
+                  final boolean tiled) {
+        mSvgResourceId = svgResourceId;
+        mWidth = width;
+        mHeight = height;
+        mSvgColor = svgColor;
+        mPressedSvgColor = pressedSvgColor;
+        mInvertSvg = invertSvg;
+        mCustomColorSet = customColorSet;
+        mIsPressable = isPressable;
+        mTintAtDrawTime = tintAtDrawTime;
+        mTiled = tiled;
+        mHashCode = computeHashCode();
+    }
+
+    int getSvgResourceId() {
+        return mSvgResourceId;
+    }
+
+    /**
+     * Renders the Drawable described by this spec. May parse and rasterize the Svg, which takes time.
+     * The bitmaps of the Drawable are acquired from the {@link BitmapPool}, and should be released with {@link #releaseBitmaps(Drawable)}.
+     *
+     * @return the Drawable, or null if there is nothing to show.
+     */
+    @Nullable
+    Drawable render(@NotNull final Context context) {
+        return render(context, false);
+    }
+
+    /**
+     * Returns the Drawable described by this spec if it can be created from memory caches without rendering.
+     * The bitmaps of the Drawable are acquired from the {@link BitmapPool}, and should be released with {@link #releaseBitmaps(Drawable)}.
+     *
+     * @return the Drawable, or null if something needs to be rendered first.
+     */
+    @Nullable
+    Drawable renderFromMemory(@NotNull final Context context) {
+        return render(context, true);
+    }
+
+    @Nullable
+    private Drawable render(@NotNull final Context context, final boolean memoryOnly) {
+        Resources resources = context.getResources();
+        if (mTintAtDrawTime && (mIsPressable || mInvertSvg || mCustomColorSet)) {
+            Bitmap mask = getMaskBitmap(context, memoryOnly);
+            return mask == null ? null : new TintedBitmapDrawable(mask, mSvgColor, mPressedSvgColor, mIsPressable);
+        }
+
+        if (mIsPressable) {
+            Bitmap pressedImage = getImageBitmap(context, mPressedSvgColor, memoryOnly);
+            Bitmap image = getImageBitmap(context, mSvgColor, memoryOnly);
+            if (memoryOnly && (pressedImage == null || image == null)) {
+                release(pressedImage);
+                release(image);
+                return null;
+            }
+
+            StateListDrawable states = new StateListDrawable();
+            states.addState(new int[]{android.R.attr.state_pressed}, new BitmapDrawable(resources, pressedImage));
+            states.addState(new int[]{}, new BitmapDrawable(resources, image));
+            return states;
+        }
+
+        if (mTiled && mWidth > 0 && mHeight > 0) {
+            return memoryOnly ? null : renderTiled(context);
+        }
+
+        if (mInvertSvg || mCustomColorSet) {
+            Bitmap image = getImageBitmap(context, mSvgColor, memoryOnly);
+            return memoryOnly && image == null ? null : new BitmapDrawable(resources, image);
+        }
+
+        Picture picture = getPicture(context, memoryOnly);
+        return picture == null ? null : new PictureDrawable(picture);
+    }
+
+    /**
+     * Releases the bitmaps of given Drawable, which was returned by {@link #render(Context)} or {@link #renderFromMemory(Context)}.
+     */
+    static void releaseBitmaps(@Nullable final Drawable drawable) {
+        if (drawable instanceof BitmapDrawable) {
+            release(((BitmapDrawable) drawable).getBitmap());
+        } else if (drawable instanceof TintedBitmapDrawable) {
+            release(((TintedBitmapDrawable) drawable).getMask());
+        } else if (drawable instanceof TiledSvgDrawable) {
+            ((TiledSvgDrawable) drawable).release();
+        } else if (drawable instanceof DrawableContainer) {
+            DrawableContainer.DrawableContainerState state = (DrawableContainer.DrawableContainerState) drawable.getConstantState();
+            Drawable[] children = state.getChildren();
+            for (int i = 0; i < state.getChildCount(); i++) {
+                releaseBitmaps(children[i]);
+            }
+        }
+    }
+
+    private static void release(@Nullable final Bitmap bitmap) {
+        if (bitmap != null) {
+            BitmapPool.getInstance().release(bitmap);
+        }
+    }
+
+    /**
+     * Returns a Drawable which rasterizes the Svg in tiles as they are drawn. Tiles are not cached, so this only parses the Svg.
+     */
+    @Nullable
+    private Drawable renderTiled(@NotNull final Context context) {
+        RenderableSvg svg = SvgCache.getInstance().getRenderableSvg(context, mSvgResourceId);
+        return svg == null ? null : new TiledSvgDrawable(svg, mWidth, mHeight, mSvgColor, mInvertSvg || mCustomColorSet, mInvertSvg);
+    }
+
+    /**
+     * Returns the Picture of the Svg recorded at this size, recording and caching it if needed.
+     */
+    @Nullable
+    private Picture getPicture(@NotNull final Context context, final boolean memoryOnly) {
+        SvgCache svgCache = SvgCache.getInstance();
+        int width = Math.max(0, mWidth);
+        int height = Math.max(0, mHeight);
+        if (width == 0 || height == 0) {
+            /* Not laid out yet, use the Svg's own document size */
+            width = 0;
+            height = 0;
+        }
+
+        Picture picture = svgCache.getPictureFromCache(mSvgResourceId, width, height);
+        if (picture == null && !memoryOnly) {
+            long startNanos = System.nanoTime();
+            RenderableSvg svg = SvgCache.getInstance().getRenderableSvg(context, mSvgResourceId);
+            if (svg != null) {
+                picture = width == 0 ? svg.renderToPicture() : svg.renderToPicture(width, height);
+                svgCache.addPictureToCache(mSvgResourceId, width, height, picture, System.nanoTime() - startNanos);
+            }
+        }
+        return picture;
+    }
+
+    /**
+     * Returns an ALPHA_8 bitmap in which every pixel that should be colored is opaque, and every other pixel is transparent.
+     * This bitmap is shared by all colors of the Svg at this size, and uses a quarter of the memory of a colored rendering.
+     */
+    @Nullable
+    private Bitmap getMaskBitmap(@NotNull final Context context, final boolean memoryOnly) {
+        SvgBitmapKey maskCacheKey = new SvgBitmapKey(mSvgResourceId, mWidth, mHeight, 0, SvgBitmapKey.FLAG_MASK | (mInvertSvg ? SvgBitmapKey.FLAG_INVERT : 0));
+        BitmapCache bitmapCache = BitmapCache.getInstance(context);
+        Bitmap image = bitmapCache.acquireBitmapFromMemoryCache(maskCacheKey);
+
+        if (image == null && !memoryOnly && mWidth > 0 && mHeight > 0) {
+            long startNanos = System.nanoTime();
+            image = renderMask(context);
+            if (image != null) {
+                BitmapPool.getInstance().acquire(image);
+                bitmapCache.addBitmapToCache(maskCacheKey, image, System.nanoTime() - startNanos);
+            }
+        }
+
+        return image;
+    }
+
+    @Nullable
+    private Bitmap getImageBitmap(@NotNull final Context context, final int color, final boolean memoryOnly) {
+        SvgBitmapKey cacheKey = new SvgBitmapKey(mSvgResourceId, mWidth, mHeight, color, getFlags());
+        BitmapCache bitmapCache = BitmapCache.getInstance(context);
+        Bitmap image = bitmapCache.acquireBitmapFromMemoryCache(cacheKey);
+
+        if (image == null && !memoryOnly && mWidth > 0 && mHeight > 0) {
+            long startNanos = System.nanoTime();
+            image = renderBitmap(context, color);
+            if (image != null) {
+                BitmapPool.getInstance().acquire(image);
+                bitmapCache.addBitmapToCache(cacheKey, image, System.nanoTime() - startNanos);
+            }
+        }
+
+        return image;
+    }
+
+    /**
+     * Renders the Svg to a new ALPHA_8 mask, see {@link #getMaskBitmap(Context, boolean)}.
+     */
+    @Nullable
+    private Bitmap renderMask(@NotNull final Context context) {
+        RenderableSvg svg = SvgCache.getInstance().getRenderableSvg(context, mSvgResourceId);
+        if (svg == null) {
+            return null;
+        }
+
+        Bitmap image = BitmapPool.getInstance().get(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        svg.renderToCanvas(new Canvas(image));
+        Bitmap mask = BitmapPool.getInstance().get(mWidth, mHeight, Bitmap.Config.ALPHA_8);
+        PixelEngine.extractMask(image, mInvertSvg, mask);
+        BitmapPool.getInstance().recycle(image);
+        return mask;
+    }
+
+    /**
+     * Renders the Svg to a new bitmap, and sets every pixel to be colored to given color.
+     */
+    @Nullable
+    private Bitmap renderBitmap(@NotNull final Context context, final int color) {
+        RenderableSvg svg = SvgCache.getInstance().getRenderableSvg(context, mSvgResourceId);
+        if (svg == null) {
+            return null;
+        }
+
+        Bitmap image = BitmapPool.getInstance().get(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(image);
+        // Render our document onto our canvas
+        svg.renderToCanvas(canvas);
+        if (mInvertSvg) {
+            image = PixelEngine.invertImage(image, color);
+        } else {
+            image = PixelEngine.convertImageColor(image, color);
+        }
+        return image;
+    }
+
+    private int getFlags() {
+        return (mInvertSvg ? SvgBitmapKey.FLAG_INVERT : 0) | (mCustomColorSet ? SvgBitmapKey.FLAG_CUSTOM_COLOR : 0);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        SvgRenderSpec that = (SvgRenderSpec) o;
+        return mSvgResourceId == that.mSvgResourceId
+                && mWidth == that.mWidth
+                && mHeight == that.mHeight
+                && mSvgColor == that.mSvgColor
+                && mPressedSvgColor == that.mPressedSvgColor
+                && mInvertSvg == that.mInvertSvg
+                && mCustomColorSet == that.mCustomColorSet
+                && mIsPressable == that.mIsPressable
+                && mTintAtDrawTime == that.mTintAtDrawTime
+                && mTiled == that.mTiled;
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    private int computeHashCode() {
+        int result = mSvgResourceId;
+        result = 31 * result + mWidth;
+        result = 31 * result + mHeight;
+        result = 31 * result + mSvgColor;
+        result = 31 * result + mPressedSvgColor;
+        result = 31 * result + (mInvertSvg ? 1 : 0);
+        result = 31 * result + (mCustomColorSet ? 1 : 0);
+        result = 31 * result + (mIsPressable ? 1 : 0);
+        result = 31 * result + (mTintAtDrawTime ? 1 : 0);
+        result = 31 * result + (mTiled ? 1 : 0);
+        return result;
+    }
+}
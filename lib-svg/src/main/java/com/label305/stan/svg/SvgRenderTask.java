@@ -0,0 +1,73 @@
+package com.label305.stan.svg;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+
+import com.label305.stan.async.AsyncTask;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * An AsyncTask which renders an {@link SvgRenderSpec} on a background thread.
+ * <p/>
+ * The rendered Drawable holds acquired bitmaps. Whoever shows it takes it over with {@link #takeResult()};
+ * if nobody does, because the task was cancelled or its owner was collected, its bitmaps are released when the task finishes.
+ */
+class SvgRenderTask extends AsyncTask<Drawable> {
+
+    private static final Executor RENDER_EXECUTOR = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    /**
+     * The application context, so a render in flight does not keep the Activity of its view from being collected.
+     */
+    @NotNull
+    private final Context mContext;
+
+    @NotNull
+    private final SvgRenderSpec mSpec;
+
+    /**
+     * The rendered Drawable, until it is taken.
+     */
+    @Nullable
+    private volatile Drawable mResult;
+
+    SvgRenderTask(@NotNull final Context context, @NotNull final SvgRenderSpec spec) {
+        super(RENDER_EXECUTOR);
+        mContext = context.getApplicationContext();
+        mSpec = spec;
+    }
+
+    @Nullable
+    @Override
+    public Drawable call() throws Exception {
+        Drawable result = mSpec.render(mContext);
+        mResult = result;
+        return result;
+    }
+
+    /**
+     * Takes over the rendered Drawable, so its bitmaps are not released when the task finishes. Must be called on the main thread.
+     *
+     * @return the Drawable, or null if there is none or it was taken already.
+     */
+    @Nullable
+    Drawable takeResult() {
+        Drawable result = mResult;
+        mResult = null;
+        return result;
+    }
+
+    @Override
+    protected void onFinally() {
+        try {
+            super.onFinally();
+        } finally {
+            SvgRenderSpec.releaseBitmaps(takeResult());
+        }
+    }
+}
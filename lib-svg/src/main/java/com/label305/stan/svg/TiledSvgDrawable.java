@@ -0,0 +1,317 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A Drawable which rasterizes a large Svg in square tiles, in parallel on a pool of background threads.
+ * <p/>
+ * Tiles are rendered when they are first drawn, and only those which intersect the clip of the canvas, so of zoomed or scrolled content
+ * only the visible part is rasterized. A tile which is not ready is left empty until it is. Under memory pressure, tiles which were
+ * not visible in the last draw are freed, to be rendered again when they come into view.
+ * <p/>
+ * Except for the constructor, all methods must be called on the main thread.
+ */
+final class TiledSvgDrawable extends Drawable {
+
+    static final int TILE_SIZE = 256;
+
+    private static final int THREAD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService TILE_EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT, new TileThreadFactory());
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * The drawables which were not released yet, of which offscreen tiles are freed under memory pressure. Synchronized on itself.
+     */
+    private static final Map<TiledSvgDrawable, Boolean> LIVE_DRAWABLES = new WeakHashMap<>();
+
+    static {
+        MemoryTrimmer.getInstance().addTrimmable(new MemoryTrimmer.Trimmable() {
+            @Override
+            public void trimToFraction(final float fraction) {
+                if (fraction < 1) {
+                    MAIN_HANDLER.post(new FreeOffscreenTilesRunnable());
+                }
+            }
+        });
+    }
+
+    @NotNull
+    private final RenderableSvg mSvg;
+
+    private final int mWidth;
+
+    private final int mHeight;
+
+    private final int mColor;
+
+    private final boolean mRecolor;
+
+    private final boolean mInvert;
+
+    private final int mColumnCount;
+
+    /**
+     * The tiles, row by row.
+     */
+    @NotNull
+    private final Tile[] mTiles;
+
+    @NotNull
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    @NotNull
+    private final Rect mClipBounds = new Rect();
+
+    private boolean mIsReleased;
+
+    /**
+     * @param width   the width to rasterize the Svg at, larger than 0.
+     * @param height  the height to rasterize the Svg at, larger than 0.
+     * @param recolor whether to recolor the tiles with given color, like {@link PixelEngine#convertImageColor(Bitmap, int)}.
+     * @param invert  whether to invert the tiles with given color, like {@link PixelEngine#invertImage(Bitmap, int)}, if recolored.
+     */
+    TiledSvgDrawable(@NotNull final RenderableSvg svg, final int width, final int height, final int color, final boolean recolor, final boolean invert) {
+        mSvg = svg;
+        mWidth = width;
+        mHeight = height;
+        mColor = color;
+        mRecolor = recolor;
+        mInvert = invert;
+
+        int columnCount = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int rowCount = (height + TILE_SIZE - 1) / TILE_SIZE;
+        mColumnCount = columnCount;
+        mTiles = new Tile[columnCount * rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                int left = column * TILE_SIZE;
+                int top = row * TILE_SIZE;
+                mTiles[row * columnCount + column] = new Tile(new Rect(left, top, Math.min(width, left + TILE_SIZE), Math.min(height, top + TILE_SIZE)));
+            }
+        }
+
+        synchronized (LIVE_DRAWABLES) {
+            LIVE_DRAWABLES.put(this, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void draw(@NotNull final Canvas canvas) {
+        Rect bounds = getBounds();
+        if (mIsReleased || bounds.isEmpty()) {
+            return;
+        }
+
+        int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        canvas.scale((float) bounds.width() / mWidth, (float) bounds.height() / mHeight);
+        if (!canvas.getClipBounds(mClipBounds)) {
+            mClipBounds.setEmpty();
+        }
+
+        for (Tile tile : mTiles) {
+            tile.mIsVisible = Rect.intersects(tile.mBounds, mClipBounds);
+            if (!tile.mIsVisible) {
+                continue;
+            }
+
+            if (tile.mBitmap != null) {
+                canvas.drawBitmap(tile.mBitmap, tile.mBounds.left, tile.mBounds.top, mPaint);
+            } else if (tile.mFuture == null) {
+                tile.mFuture = TILE_EXECUTOR.submit(new RenderTileRunnable(tile));
+            }
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Cancels the rendering of tiles, and returns the bitmaps of rendered tiles to the {@link BitmapPool}. The drawable draws nothing afterwards.
+     */
+    void release() {
+        mIsReleased = true;
+        for (Tile tile : mTiles) {
+            if (tile.mFuture != null) {
+                tile.mFuture.cancel(false);
+                tile.mFuture = null;
+            }
+            tile.free();
+        }
+
+        synchronized (LIVE_DRAWABLES) {
+            LIVE_DRAWABLES.remove(this);
+        }
+    }
+
+    /**
+     * Returns whether the tile in given column and row has been scheduled to render, or has been rendered.
+     */
+    boolean isTileRequested(final int column, final int row) {
+        Tile tile = mTiles[row * mColumnCount + column];
+        return tile.mFuture != null || tile.mBitmap != null;
+    }
+
+    /**
+     * Drops the bitmaps of tiles which were not visible in the last draw. They are not pooled, so their memory is freed.
+     */
+    private void freeOffscreenTiles() {
+        for (Tile tile : mTiles) {
+            if (!tile.mIsVisible) {
+                tile.mBitmap = null;
+            }
+        }
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public void setAlpha(final int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable final ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    private static final class Tile {
+
+        @NotNull
+        final Rect mBounds;
+
+        @Nullable
+        Bitmap mBitmap;
+
+        @Nullable
+        Future<?> mFuture;
+
+        boolean mIsVisible;
+
+        Tile(@NotNull final Rect bounds) {
+            mBounds = bounds;
+        }
+
+        void free() {
+            if (mBitmap != null) {
+                BitmapPool.getInstance().recycle(mBitmap);
+                mBitmap = null;
+            }
+        }
+    }
+
+    /**
+     * Rasterizes a tile on a tile thread, and hands the result to the main thread.
+     */
+    private class RenderTileRunnable implements Runnable {
+
+        @NotNull
+        private final Tile mTile;
+
+        RenderTileRunnable(@NotNull final Tile tile) {
+            mTile = tile;
+        }
+
+        @Override
+        public void run() {
+            Rect bounds = mTile.mBounds;
+            Bitmap bitmap = BitmapPool.getInstance().get(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            canvas.translate(-bounds.left, -bounds.top);
+            mSvg.renderToCanvas(canvas, mWidth, mHeight);
+            if (mRecolor) {
+                if (mInvert) {
+                    PixelEngine.invertImage(bitmap, mColor);
+                } else {
+                    PixelEngine.convertImageColor(bitmap, mColor);
+                }
+            }
+            MAIN_HANDLER.post(new TileRenderedRunnable(mTile, bitmap));
+        }
+    }
+
+    private class TileRenderedRunnable implements Runnable {
+
+        @NotNull
+        private final Tile mTile;
+
+        @NotNull
+        private final Bitmap mBitmap;
+
+        TileRenderedRunnable(@NotNull final Tile tile, @NotNull final Bitmap bitmap) {
+            mTile = tile;
+            mBitmap = bitmap;
+        }
+
+        @Override
+        public void run() {
+            if (mIsReleased || mTile.mBitmap != null) {
+                BitmapPool.getInstance().recycle(mBitmap);
+                return;
+            }
+
+            mTile.mFuture = null;
+            mTile.mBitmap = mBitmap;
+            invalidateSelf();
+        }
+    }
+
+    private static class FreeOffscreenTilesRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            List<TiledSvgDrawable> drawables;
+            synchronized (LIVE_DRAWABLES) {
+                drawables = new ArrayList<>(LIVE_DRAWABLES.keySet());
+            }
+            for (TiledSvgDrawable drawable : drawables) {
+                drawable.freeOffscreenTiles();
+            }
+        }
+    }
+
+    private static class TileThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(@NotNull final Runnable runnable) {
+            Thread thread = new Thread(runnable, "TiledSvgDrawable");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
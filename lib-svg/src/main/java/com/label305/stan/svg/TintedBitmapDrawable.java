@@ -0,0 +1,163 @@
+package com.label305.stan.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A Drawable which draws a shared mask bitmap, usually ALPHA_8, tinted with a color at draw time.
+ * Every non-transparent pixel of the mask is drawn in the tint color.
+ * <p/>
+ * When pressable, the pressed color is applied while the drawable is in the pressed state.
+ * The color filters are kept for the lifetime of the drawable, so changing state does not allocate.
+ * They are shared through a small cache of recently used colors, so tinting many drawables with the same colors does not allocate either.
+ * A color filter set with {@link #setColorFilter(ColorFilter)} replaces the tint in every state.
+ */
+class TintedBitmapDrawable extends Drawable {
+
+    private static final int COLOR_FILTER_CACHE_SIZE = 32;
+
+    @NotNull
+    private static final LruCache<Integer, ColorFilter> COLOR_FILTERS = new LruCache<>(COLOR_FILTER_CACHE_SIZE);
+
+    @NotNull
+    private final Bitmap mMask;
+
+    @NotNull
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    @NotNull
+    private final ColorFilter mColorFilter;
+
+    private final int mPressedColor;
+
+    private final boolean mIsPressable;
+
+    /**
+     * Looked up on first press.
+     */
+    @Nullable
+    private ColorFilter mPressedColorFilter;
+
+    /**
+     * The color filter set by the app, which replaces the tint.
+     */
+    @Nullable
+    private ColorFilter mCustomColorFilter;
+
+    private boolean mIsPressed;
+
+    TintedBitmapDrawable(@NotNull final Bitmap mask, final int color, final int pressedColor, final boolean isPressable) {
+        mMask = mask;
+        mColorFilter = getColorFilter(color);
+        mPressedColor = pressedColor;
+        mIsPressable = isPressable;
+        mPaint.setColorFilter(mColorFilter);
+    }
+
+    /**
+     * Returns a color filter which tints with given color, reusing a recently used one if possible.
+     */
+    @NotNull
+    private static ColorFilter getColorFilter(final int color) {
+        ColorFilter result = COLOR_FILTERS.get(color);
+        if (result == null) {
+            result = new PorterDuffColorFilter(color, PorterDuff.Mode.SRC_IN);
+            COLOR_FILTERS.put(color, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the color filter of the tint for the current state.
+     */
+    @NotNull
+    ColorFilter getTintColorFilter() {
+        if (!mIsPressed) {
+            return mColorFilter;
+        }
+
+        if (mPressedColorFilter == null) {
+            mPressedColorFilter = getColorFilter(mPressedColor);
+        }
+        return mPressedColorFilter;
+    }
+
+    @NotNull
+    Bitmap getMask() {
+        return mMask;
+    }
+
+    @Override
+    public void draw(@NotNull final Canvas canvas) {
+        canvas.drawBitmap(mMask, null, getBounds(), mPaint);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mMask.getWidth();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mMask.getHeight();
+    }
+
+    @Override
+    public boolean isStateful() {
+        return mIsPressable;
+    }
+
+    @Override
+    protected boolean onStateChange(@NotNull final int[] state) {
+        boolean isPressed = false;
+        for (int attr : state) {
+            if (attr == android.R.attr.state_pressed) {
+                isPressed = true;
+            }
+        }
+
+        if (!mIsPressable || isPressed == mIsPressed) {
+            return false;
+        }
+
+        mIsPressed = isPressed;
+        if (mCustomColorFilter != null) {
+            return false;
+        }
+
+        mPaint.setColorFilter(getTintColorFilter());
+        invalidateSelf();
+        return true;
+    }
+
+    @Override
+    public void setAlpha(final int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    /**
+     * Replaces the tint color filter with given filter, or restores it if {@code null}.
+     */
+    @Override
+    public void setColorFilter(@Nullable final ColorFilter cf) {
+        mCustomColorFilter = cf;
+        mPaint.setColorFilter(cf == null ? getTintColorFilter() : cf);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,44 @@
+package com.label305.stan.svg;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.RectF;
+
+import com.caverock.androidsvg.SVG;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link RenderableSvg} parsed from XML by AndroidSVG.
+ */
+class XmlSvg implements RenderableSvg {
+
+    @NotNull
+    private final SVG mSvg;
+
+    XmlSvg(@NotNull final SVG svg) {
+        mSvg = svg;
+    }
+
+    @Override
+    public void renderToCanvas(@NotNull final Canvas canvas) {
+        mSvg.renderToCanvas(canvas);
+    }
+
+    @Override
+    public void renderToCanvas(@NotNull final Canvas canvas, final int viewportWidth, final int viewportHeight) {
+        mSvg.renderToCanvas(canvas, new RectF(0, 0, viewportWidth, viewportHeight));
+    }
+
+    @NotNull
+    @Override
+    public Picture renderToPicture() {
+        return mSvg.renderToPicture();
+    }
+
+    @NotNull
+    @Override
+    public Picture renderToPicture(final int width, final int height) {
+        return mSvg.renderToPicture(width, height);
+    }
+}